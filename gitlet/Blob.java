@@ -1,43 +1,97 @@
 package gitlet;
 
 import java.io.File;
-import java.io.Serializable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
 
-/** handles the contents of the files? Not sure if needed
+/** The identity of one version of a file: its name, the sha1 of its name
+ *  and contents, and its size.  The contents themselves are never held
+ *  here; they are streamed through a fixed-size buffer while hashing and
+ *  live only in the blob's object file.
  * @author Chuhui Han
  */
 
-public class Blob implements Serializable {
+public class Blob {
+
+    /** Size of the buffer file contents are streamed through. */
+    static final int CHUNK_SIZE = 1 << 16;
+
+    /** Each thread's buffer for streaming file contents, allocated once
+     *  outside the heap so that channel reads need no extra copy. */
+    private static final ThreadLocal<ByteBuffer> BUFFER =
+        ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(CHUNK_SIZE));
 
     /** The blob's filename. */
     private String _fileName;
-    /** The blob's filename. */
-    private String _fileContentsString;
-    /** The blob's filename. */
-    private byte[] _fileContents;
-    /** The blob's filename. */
-    private String _sha1;
+    /** The number of bytes in the file's contents. */
+    private long _size;
+    /** The sha1 of the filename followed by the contents. */
+    private ObjectId _sha1;
 
+    /** The blob for the current contents of FILE. */
     public Blob(File file) {
+        this(file, null);
+    }
+
+    /** The blob for the current contents of FILE, also copying those
+     *  contents to OUT as they are hashed unless OUT is null. */
+    Blob(File file, WritableByteChannel out) {
         _fileName = file.getName();
-        _fileContentsString = Utils.readContentsAsString(file);
-        _fileContents = Utils.readContents(file);
-        _sha1 = Utils.sha1(_fileName + _fileContentsString);
+        MessageDigest md = ObjectId.digest();
+        md.update(_fileName.getBytes(StandardCharsets.UTF_8));
+        try (FileChannel in = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ)) {
+            ByteBuffer buffer = BUFFER.get();
+            buffer.clear();
+            while (in.read(buffer) != -1) {
+                buffer.flip();
+                _size += buffer.remaining();
+                if (out != null) {
+                    buffer.mark();
+                    while (buffer.hasRemaining()) {
+                        out.write(buffer);
+                    }
+                    buffer.reset();
+                }
+                md.update(buffer);
+                buffer.clear();
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        _sha1 = ObjectId.finish(md);
     }
 
-    public String getName() {
-        return _fileName;
+    /** The blob of a file named FILENAME whose SIZE bytes of contents
+     *  have already been hashed to SHA1. */
+    Blob(String fileName, long size, ObjectId sha1) {
+        _fileName = fileName;
+        _size = size;
+        _sha1 = sha1;
+    }
+
+    /** Return a new digest that has hashed FILENAME, ready for the
+     *  contents of a file with that name, as for a blob's sha1. */
+    static MessageDigest digest(String fileName) {
+        MessageDigest md = ObjectId.newDigest();
+        md.update(fileName.getBytes(StandardCharsets.UTF_8));
+        return md;
     }
 
-    public byte[] getFileContents() {
-        return _fileContents;
+    public String getName() {
+        return _fileName;
     }
 
-    public String getFileContentsString() {
-        return _fileContentsString;
+    public long getSize() {
+        return _size;
     }
 
-    public String getSha1() {
+    public ObjectId getSha1() {
         return _sha1;
     }
 
@@ -1,38 +1,32 @@
 package gitlet;
 
-import java.io.File;
 import java.io.Serializable;
-import java.util.HashMap;
 
 public class Branch implements Serializable {
 
-    /** The blob's filename. */
-    private Commit _HEAD;
-    /** The blob's filename. */
+    /** The sha1 of the commit at the head of this branch. */
+    private ObjectId _head;
+    /** The branch's name. */
     private String _name;
-    /** The blob's filename. */
+    /** Whether this is the checked-out branch. */
     private Boolean _inUse;
-    /** The blob's filename. */
-    private HashMap<String, String> trackedInBranch = new HashMap<>();
-    /** The second parent, only happens if merged. */
-    private File allBlobDirectory = new File(".gitlet/blobs/");
 
-    public Branch(String name, Commit head, Boolean inUse) {
+    public Branch(String name, ObjectId head, Boolean inUse) {
         _name = name;
-        _HEAD = head;
+        _head = head;
         _inUse = inUse;
     }
 
-    public void changeHead(Commit head) {
-        _HEAD = head;
+    public void changeHead(ObjectId head) {
+        _head = head;
     }
 
     public String getName() {
         return _name;
     }
 
-    public Commit getHead() {
-        return _HEAD;
+    public ObjectId getHeadSha1() {
+        return _head;
     }
 
     public boolean isInuse() {
@@ -43,21 +37,4 @@ public class Branch implements Serializable {
         _inUse = now;
     }
 
-    public void addTracked(String name, String sha1) {
-        if (!trackedInBranch.containsKey(name)
-                && !trackedInBranch.containsValue(sha1)) {
-            trackedInBranch.put(name, sha1);
-        } else if (trackedInBranch.containsKey(name)
-                && !trackedInBranch.get(name).equals(sha1)) {
-            trackedInBranch.put(name, sha1);
-        } else if (!trackedInBranch.containsKey(name)
-                && trackedInBranch.containsValue(sha1)) {
-            trackedInBranch.put(name, sha1);
-        }
-    }
-
-    public HashMap<String, String> getTrackedInBranch() {
-        return trackedInBranch;
-    }
-
 }
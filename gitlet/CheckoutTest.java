@@ -0,0 +1,151 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of reset and checkout, each run as its own gitlet command in a
+ *  fresh repository.
+ *  @author Chuhui Han
+ */
+public class CheckoutTest {
+
+    /** Return what gitlet prints for the command ARGS, run in DIR. */
+    private static String gitlet(File dir, String... args)
+        throws IOException, InterruptedException {
+        String[] command = new String[args.length + 4];
+        command[0] = new File(System.getProperty("java.home"),
+                              "bin/java").getPath();
+        command[1] = "-cp";
+        command[2] = System.getProperty("java.class.path");
+        command[3] = Main.class.getName();
+        System.arraycopy(args, 0, command, 4, args.length);
+        Process process = new ProcessBuilder(command).directory(dir)
+            .redirectErrorStream(true).start();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = process.getInputStream()) {
+            byte[] buffer = new byte[4096];
+            for (int n; (n = in.read(buffer)) > 0;) {
+                out.write(buffer, 0, n);
+            }
+        }
+        assertEquals(0, process.waitFor());
+        return out.toString("UTF-8");
+    }
+
+    /** Return a new repository with the files a.txt and b.txt committed. */
+    private static File repository()
+        throws IOException, InterruptedException {
+        File dir = Files.createTempDirectory("gitlet").toFile();
+        gitlet(dir, "init");
+        Utils.writeContents(new File(dir, "a.txt"), "a\n");
+        Utils.writeContents(new File(dir, "b.txt"), "b\n");
+        gitlet(dir, "add", "a.txt", "b.txt");
+        gitlet(dir, "commit", "two files");
+        return dir;
+    }
+
+    /** Return the id of the head commit of DIR. */
+    private static String head(File dir)
+        throws IOException, InterruptedException {
+        String log = gitlet(dir, "log");
+        int start = log.indexOf("commit ") + "commit ".length();
+        return log.substring(start, start + ObjectId.HEX_LENGTH);
+    }
+
+    /** Delete DIR and everything in it. */
+    private static void delete(File dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir.toPath())) {
+            paths.sorted(Comparator.reverseOrder())
+                .forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /** Check that reset to the head commit puts back a tracked file that
+     *  was changed, and one that was deleted, without staging either. */
+    @Test
+    public void resetRestoresChangedFiles()
+        throws IOException, InterruptedException {
+        File dir = repository();
+        try {
+            Utils.writeContents(new File(dir, "a.txt"), "changed\n");
+            new File(dir, "b.txt").delete();
+            assertEquals("", gitlet(dir, "reset", head(dir)));
+            assertEquals("a\n",
+                         Utils.readContentsAsString(new File(dir, "a.txt")));
+            assertEquals("b\n",
+                         Utils.readContentsAsString(new File(dir, "b.txt")));
+            String status = gitlet(dir, "status");
+            assertFalse(status, status.contains("a.txt"));
+            assertFalse(status, status.contains("b.txt"));
+        } finally {
+            delete(dir);
+        }
+    }
+
+    /** Check that reset to the head commit drops a staged change and a
+     *  staged removal, putting back the committed files. */
+    @Test
+    public void resetDropsStagedChanges()
+        throws IOException, InterruptedException {
+        File dir = repository();
+        try {
+            Utils.writeContents(new File(dir, "a.txt"), "staged\n");
+            gitlet(dir, "add", "a.txt");
+            gitlet(dir, "rm", "b.txt");
+            assertEquals("", gitlet(dir, "reset", head(dir)));
+            assertEquals("a\n",
+                         Utils.readContentsAsString(new File(dir, "a.txt")));
+            assertEquals("b\n",
+                         Utils.readContentsAsString(new File(dir, "b.txt")));
+            String status = gitlet(dir, "status");
+            assertFalse(status, status.contains("a.txt"));
+            assertFalse(status, status.contains("b.txt"));
+        } finally {
+            delete(dir);
+        }
+    }
+
+    /** Check that a checkout that cannot write a file, here because an
+     *  empty directory stands where it goes, leaves the files it would
+     *  have deleted, and the branch, as they were. */
+    @Test
+    public void failedCheckoutChangesNothing()
+        throws IOException, InterruptedException {
+        File dir = repository();
+        try {
+            gitlet(dir, "branch", "other");
+            gitlet(dir, "rm", "a.txt");
+            File inside = new File(dir, "p/q");
+            inside.getParentFile().mkdirs();
+            Utils.writeContents(inside, "q\n");
+            gitlet(dir, "add", "p/q");
+            gitlet(dir, "commit", "p as a directory");
+            gitlet(dir, "checkout", "other");
+            gitlet(dir, "rm", "b.txt");
+            Utils.writeContents(new File(dir, "p"), "p\n");
+            gitlet(dir, "add", "p");
+            gitlet(dir, "commit", "p as a file");
+            gitlet(dir, "checkout", "master");
+            new File(dir, "p/empty").mkdir();
+
+            assertNotEquals("", gitlet(dir, "checkout", "other"));
+            assertEquals("q\n", Utils.readContentsAsString(inside));
+            assertEquals("b\n",
+                         Utils.readContentsAsString(new File(dir, "b.txt")));
+            assertFalse(new File(dir, "a.txt").exists());
+            assertTrue(gitlet(dir, "status").contains("*master"));
+        } finally {
+            delete(dir);
+        }
+    }
+
+}
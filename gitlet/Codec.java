@@ -0,0 +1,156 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/** The compression applied to object files.  Every object file starts
+ *  with one byte saying how the rest of it is encoded, so objects written
+ *  under different settings can always be read back, and objects that do
+ *  not shrink are simply stored as they are.
+ *  @author Chuhui Han
+ */
+class Codec {
+
+    /** Header byte of an object stored without compression. */
+    static final int STORED = 0;
+    /** Header byte of an object compressed with deflate. */
+    static final int DEFLATED = 1;
+    /** The level meaning "never compress". */
+    static final int STORE_ONLY = -2;
+
+    /** A codec compressing at deflate LEVEL (0-9, or -1 for the default),
+     *  or storing everything as is if LEVEL is STORE_ONLY. */
+    Codec(int level) {
+        if (level != STORE_ONLY
+                && (level < Deflater.DEFAULT_COMPRESSION
+                    || level > Deflater.BEST_COMPRESSION)) {
+            throw Utils.error("Invalid compression level.");
+        }
+        _level = level;
+    }
+
+    /** Return the codec named by SETTING, which is either "store" or a
+     *  deflate level. */
+    static Codec parse(String setting) {
+        if (setting.equals("store")) {
+            return new Codec(STORE_ONLY);
+        }
+        try {
+            return new Codec(Integer.parseInt(setting.trim()));
+        } catch (NumberFormatException excp) {
+            throw Utils.error("Invalid compression level.");
+        }
+    }
+
+    /** Return the codec recorded in CONFIG, or the default deflate codec
+     *  if CONFIG does not exist. */
+    static Codec read(File config) {
+        if (!config.isFile()) {
+            return new Codec(Deflater.DEFAULT_COMPRESSION);
+        }
+        return parse(Utils.readContentsAsString(config));
+    }
+
+    /** Record this codec in CONFIG. */
+    void write(File config) {
+        Utils.writeContents(config, toString());
+    }
+
+    @Override
+    public String toString() {
+        return _level == STORE_ONLY ? "store" : Integer.toString(_level);
+    }
+
+    /** Return the encoded form of DATA, stored raw if compressing it would
+     *  not make it smaller. */
+    byte[] encode(byte[] data) {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        try {
+            if (_level != STORE_ONLY) {
+                OutputStream out = wrap(result);
+                out.write(data);
+                out.close();
+                if (shrank(result.size(), data.length)) {
+                    return result.toByteArray();
+                }
+                result.reset();
+            }
+            result.write(STORED);
+            result.write(data);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return result.toByteArray();
+    }
+
+    /** Return the contents encoded in DATA. */
+    static byte[] decode(byte[] data) {
+        try (InputStream in = open(new ByteArrayInputStream(data))) {
+            return in.readAllBytes();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Write this codec's header to OUT and return a stream that encodes
+     *  what is written to it onto OUT.  Unlike encode, this cannot fall
+     *  back to storing raw once it has started; see shrank. */
+    OutputStream wrap(OutputStream out) throws IOException {
+        if (_level == STORE_ONLY) {
+            out.write(STORED);
+            return out;
+        }
+        out.write(DEFLATED);
+        Deflater deflater = new Deflater(_level);
+        return new DeflaterOutputStream(out, deflater, Blob.CHUNK_SIZE) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    deflater.end();
+                }
+            }
+        };
+    }
+
+    /** Return true iff an object file of ENCODEDSIZE bytes, holding
+     *  RAWSIZE bytes of contents, is smaller than storing them raw. */
+    static boolean shrank(long encodedSize, long rawSize) {
+        return encodedSize - 1 < rawSize;
+    }
+
+    /** Read the header from IN and return a stream of the decoded
+     *  contents that follow it. */
+    static InputStream open(InputStream in) throws IOException {
+        int header = in.read();
+        if (header == STORED) {
+            return in;
+        } else if (header == DEFLATED) {
+            Inflater inflater = new Inflater();
+            return new InflaterInputStream(in, inflater, Blob.CHUNK_SIZE) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        inflater.end();
+                    }
+                }
+            };
+        }
+        in.close();
+        throw new IOException("unknown object encoding");
+    }
+
+    /** The deflate level, or STORE_ONLY. */
+    private final int _level;
+}
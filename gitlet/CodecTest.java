@@ -0,0 +1,109 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of Codec.
+ *  @author Chuhui Han
+ */
+public class CodecTest {
+
+    /** Levels to try every codec test with. */
+    private static final int[] LEVELS = { Codec.STORE_ONLY, -1, 0, 1, 9 };
+
+    /** Return N bytes of text that compresses well. */
+    private static byte[] text(int n) {
+        byte[] result = new byte[n];
+        for (int k = 0; k < n; k += 1) {
+            result[k] = (byte) "gitlet\n".charAt(k % 7);
+        }
+        return result;
+    }
+
+    /** Return N random bytes, which will not compress. */
+    private static byte[] noise(int n) {
+        byte[] result = new byte[n];
+        new Random(61).nextBytes(result);
+        return result;
+    }
+
+    /** Check that decode undoes encode at every level, for contents that
+     *  do and do not compress. */
+    @Test
+    public void encodeRoundTrip() {
+        byte[][] contents = { new byte[0], text(1), text(10000),
+                              noise(1), noise(10000) };
+        for (int level : LEVELS) {
+            Codec codec = new Codec(level);
+            for (byte[] data : contents) {
+                byte[] encoded = codec.encode(data);
+                assertArrayEquals(data, Codec.decode(encoded));
+                assertTrue(encoded.length <= data.length + 1);
+            }
+        }
+    }
+
+    /** Check the header byte chosen for each kind of contents. */
+    @Test
+    public void headers() {
+        assertEquals(Codec.DEFLATED, new Codec(-1).encode(text(10000))[0]);
+        assertEquals(Codec.STORED, new Codec(-1).encode(noise(10000))[0]);
+        assertEquals(Codec.STORED,
+                     new Codec(Codec.STORE_ONLY).encode(text(10000))[0]);
+    }
+
+    /** Check that what is written through wrap is read back through
+     *  open, however it is split into writes. */
+    @Test
+    public void streamRoundTrip() throws IOException {
+        byte[] data = text(100000);
+        for (int level : LEVELS) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (OutputStream out = new Codec(level).wrap(bytes)) {
+                out.write(data, 0, 10);
+                out.write(data, 10, data.length - 10);
+            }
+            byte[] encoded = bytes.toByteArray();
+            assertArrayEquals(data, Codec.decode(encoded));
+            try (InputStream in =
+                     Codec.open(new ByteArrayInputStream(encoded))) {
+                assertArrayEquals(data, in.readAllBytes());
+            }
+        }
+    }
+
+    /** Check reading and refusing settings. */
+    @Test
+    public void settings() {
+        assertEquals("store", Codec.parse("store").toString());
+        assertEquals("9", Codec.parse(" 9\n").toString());
+        assertEquals("-1", Codec.parse("-1").toString());
+        for (String bad : new String[] { "10", "-3", "fast", "" }) {
+            try {
+                Codec.parse(bad);
+                fail("accepted " + bad);
+            } catch (GitletException excp) {
+                assertEquals("Invalid compression level.", excp.getMessage());
+            }
+        }
+    }
+
+    /** Check that contents with an unknown header are refused. */
+    @Test
+    public void unknownHeader() {
+        try {
+            Codec.decode(new byte[] { 7, 1, 2, 3 });
+            fail("decoded an unknown header");
+        } catch (IllegalArgumentException excp) {
+            assertEquals("unknown object encoding", excp.getMessage());
+        }
+    }
+
+}
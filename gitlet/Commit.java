@@ -1,114 +1,120 @@
 package gitlet;
 
-import java.io.File;
 import java.io.Serializable;
+import java.text.ParseException;
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.TreeMap;
 import java.util.Date;
 
 /***
  * This class stores the commit tree and does the logic for each commit.
+ * A stored commit only records the sha1s of its parents and of its tree,
+ * so writing or reading one costs the same however long the history is;
+ * parents and tracked files are fetched from the object store on demand.
  * @author Chuhui Han
  */
 
 public class Commit implements Serializable {
 
-    /** The blob's filename. */
+    /** The format of commit times. */
+    static final String TIME_FORMAT = "EEE MMM d HH:mm:ss yyyy Z";
+
+    /** The commit message. */
     private String _message;
-    /** The blob's filename. */
-    private String _author;
-    /** The blob's filename. */
+    /** The time the commit was made. */
     private String _time;
-    /** The blob's filename. */
-    private ArrayList<File> _files;
-    /** The blob's filename. */
-    private TreeMap<String, String> trackedFiles = new TreeMap<>();
-    /** The blob's filename. */
-    private TreeMap<String, String> trackedBlobs = new TreeMap<>();
-    /** The blob's filename. */
-    private Commit _parent;
-    /** The blob's filename. */
-    private String _parentSha1;
-    /** The blob's filename. */
-    private String _sha1;
-    /** The second parent, only happens if merged. */
-    private Commit _secondParent;
+    /** The sha1 of the tree of files tracked by this commit. */
+    private ObjectId _tree;
+    /** The sha1 of the parent commit, null for the initial commit. */
+    private ObjectId _parentSha1;
+    /** The sha1 of the second parent, only set if merged. */
+    private ObjectId _secondParentSha1;
+    /** This commit's sha1, known once its tree is fixed. */
+    private ObjectId _sha1;
+    /** Tracked file path to blob sha1, read from _tree when first
+     *  needed. */
+    private transient Snapshot trackedFiles;
+    /** The store this commit was read from or written to. */
+    private transient ObjectStore _store;
 
 
     public Commit(String message, Commit parent, Commit secondParent) {
         _message = message;
-        _parent = parent;
-        _secondParent = secondParent;
 
         if (parent == null) {
             _time = "Wed Dec 31 16:00:00 1969 -0800";
-            _sha1 = Utils.sha1(_message + _time);
         } else {
             _parentSha1 = parent.getSha1();
-            trackedFiles =
-                    new TreeMap<>(parent.getTrackedFiles());
-            _sha1 = Utils.sha1(_message + _time + _parentSha1);
-
-            Date tempTime = new java.util.Date();
-            SimpleDateFormat newDate =
-                    new SimpleDateFormat("\"EEE MMM d HH:mm:ss yyyy Z\"");
 
-            _time = newDate.format(tempTime).replaceAll("\"", "");
+            _time = new SimpleDateFormat(TIME_FORMAT).format(new Date());
+        }
+        if (secondParent != null) {
+            _secondParentSha1 = secondParent.getSha1();
         }
     }
 
-    public String getMessage() {
-        return _message;
-    }
-
-    public void addTracked(String name, String sha1) {
-        trackedFiles.put(name, sha1);
-    }
-
-    public void changeTracked(String name, String sha1) {
-        trackedFiles.remove(name, trackedBlobs.get(name));
-        trackedFiles.put(name, sha1);
+    /** Record the tree with sha1 TREE as this commit's snapshot, which
+     *  fixes this commit's sha1. */
+    void setTree(ObjectId tree) {
+        _tree = tree;
+        trackedFiles = null;
+        _sha1 = ObjectId.hash(_message, _time, _tree.toString(),
+                _parentSha1 == null ? "" : _parentSha1.toString(),
+                _secondParentSha1 == null
+                ? "" : _secondParentSha1.toString());
     }
 
-    public void removeTracked(String name, String sha1) {
-        trackedFiles.remove(name, sha1);
+    /** Resolve parents and tracked files through STORE from now on. */
+    void attach(ObjectStore store) {
+        _store = store;
     }
 
-    public String getAuthor() {
-        return _author;
+    public String getMessage() {
+        return _message;
     }
 
     public String getTime() {
         return _time;
     }
 
-    public void setMessage(String m) {
-        _message = m;
+    /** Return the time of this commit in milliseconds since the epoch. */
+    long getTimestamp() {
+        try {
+            return new SimpleDateFormat(TIME_FORMAT).parse(_time).getTime();
+        } catch (ParseException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
     }
 
-    public void setTime(String t) {
-        _time = t;
+    public Snapshot getTrackedFiles() {
+        if (trackedFiles == null) {
+            trackedFiles = _store.getFiles(_tree);
+        }
+        return trackedFiles;
     }
 
-    public ArrayList<File> getFiles() {
-        return _files;
+    public ObjectId getTreeSha1() {
+        return _tree;
     }
 
-    public TreeMap<String, String> getTrackedFiles() {
-        return trackedFiles;
+    public ObjectId getSha1() {
+        return _sha1;
     }
 
-    public String getSha1() {
-        return _sha1;
+    public ObjectId getParentSha1() {
+        return _parentSha1;
+    }
+
+    public ObjectId getSecondParentSha1() {
+        return _secondParentSha1;
     }
 
     public Commit getParent() {
-        return _parent;
+        return _parentSha1 == null ? null : _store.getCommit(_parentSha1);
     }
 
     public Commit getSecondParent() {
-        return _secondParent;
+        return _secondParentSha1 == null
+                ? null : _store.getCommit(_secondParentSha1);
     }
 
 }
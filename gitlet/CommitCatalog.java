@@ -0,0 +1,176 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+/** The catalogue of every commit, for listing them all without reading
+ *  any commit object.  Like the CommitGraph, it has one fixed-size record
+ *  per commit, in the order the commits were made, so a commit's record
+ *  is at its commit-graph position.  Each record holds
+ *
+ *      sha1                                20 bytes
+ *      time, in ms since the epoch         long
+ *      offset of the message               long
+ *      sha1s of its parents                20 bytes each, zero if absent
+ *
+ *  and the commit's time as shown and its message are appended to a
+ *  separate message file at that offset, each as a length and UTF-8
+ *  bytes.  Both files are only appended to.  The records are read through
+ *  a memory map and the messages by offset, so walking every commit takes
+ *  constant memory however large the message file grows.
+ *  @author Chuhui Han
+ */
+class CommitCatalog {
+
+    /** Marks the start of a catalogue file. */
+    static final int MAGIC = 0x47434154;
+    /** The catalogue format version. */
+    static final int VERSION = 1;
+    /** Bytes before the first record. */
+    static final int HEADER = 8;
+    /** Bytes in one record. */
+    static final int RECORD = 3 * PackIndex.ID_BYTES + 16;
+
+    /** The catalogue whose records are in RECORDS and messages in
+     *  MESSAGES, which are created empty if missing. */
+    CommitCatalog(File records, File messages) {
+        _records = records;
+        _messages = messages;
+        if (!records.exists()) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            header.putInt(MAGIC).putInt(VERSION);
+            Utils.writeContents(records, (Object) header.array());
+            Utils.writeContents(messages, (Object) new byte[0]);
+        }
+    }
+
+    /** Return the number of commits catalogued. */
+    int size() {
+        return (records().capacity() - HEADER) / RECORD;
+    }
+
+    /** Append the record of COMMIT, which must come after every commit
+     *  catalogued so far in the commit graph. */
+    void add(Commit commit) {
+        byte[] time = commit.getTime().getBytes(StandardCharsets.UTF_8);
+        byte[] message =
+            commit.getMessage().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer text = ByteBuffer.allocate(8 + time.length
+                                              + message.length);
+        text.putInt(time.length).put(time)
+            .putInt(message.length).put(message);
+        ByteBuffer record = ByteBuffer.allocate(RECORD);
+        commit.getSha1().write(record);
+        record.putLong(commit.getTimestamp()).putLong(_messages.length());
+        putOptional(record, commit.getParentSha1());
+        putOptional(record, commit.getSecondParentSha1());
+        try {
+            Files.write(_messages.toPath(), text.array(),
+                        StandardOpenOption.APPEND);
+            Files.write(_records.toPath(), record.array(),
+                        StandardOpenOption.APPEND);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        _recordMap = null;
+    }
+
+    /** Return the sha1 of the commit at POSITION. */
+    ObjectId idAt(int position) {
+        return ObjectId.read(records(), record(position));
+    }
+
+    /** Return the time of the commit at POSITION as commits show it. */
+    String timeAt(int position) {
+        return text(messageOffset(position));
+    }
+
+    /** Return the message of the commit at POSITION. */
+    String messageAt(int position) {
+        long offset = messageOffset(position);
+        return text(offset + 4 + read(offset, 4).getInt(0));
+    }
+
+    /** Return the offset in the message file of the text of the commit
+     *  at POSITION. */
+    private long messageOffset(int position) {
+        return records().getLong(record(position) + PackIndex.ID_BYTES + 8);
+    }
+
+    /** Return the string stored at OFFSET in the message file. */
+    private String text(long offset) {
+        ByteBuffer text = read(offset + 4, read(offset, 4).getInt(0));
+        return new String(text.array(), StandardCharsets.UTF_8);
+    }
+
+    /** Return the SIZE bytes at OFFSET in the message file.  The file is
+     *  read rather than mapped, since it may grow past what one map can
+     *  hold. */
+    private ByteBuffer read(long offset, int size) {
+        ByteBuffer result = ByteBuffer.allocate(size);
+        try {
+            if (_messageChannel == null) {
+                _messageChannel = FileChannel.open(_messages.toPath(),
+                                                   StandardOpenOption.READ);
+            }
+            while (result.hasRemaining()) {
+                if (_messageChannel.read(result, offset + result.position())
+                    < 0) {
+                    throw new IllegalArgumentException("bad commit catalogue");
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return result;
+    }
+
+    /** Put the sha1 ID into RECORD, or zeros if ID is null. */
+    private static void putOptional(ByteBuffer record, ObjectId id) {
+        (id == null ? ObjectId.ZERO : id).write(record);
+    }
+
+    /** Return the offset of the record at POSITION. */
+    private int record(int position) {
+        return HEADER + position * RECORD;
+    }
+
+    /** Return the mapped records, mapping them again if they have
+     *  grown. */
+    private MappedByteBuffer records() {
+        if (_recordMap == null) {
+            _recordMap = map(_records);
+            if (_recordMap.getInt(0) != MAGIC
+                || _recordMap.getInt(4) != VERSION) {
+                throw new IllegalArgumentException("bad commit catalogue");
+            }
+        }
+        return _recordMap;
+    }
+
+    /** Return FILE mapped for reading. */
+    private static MappedByteBuffer map(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                                                    StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                               channel.size());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** The file of records. */
+    private final File _records;
+    /** The file of times and messages. */
+    private final File _messages;
+    /** The mapped records, or null if not mapped since the last append. */
+    private MappedByteBuffer _recordMap;
+    /** The open message file, once read from. */
+    private FileChannel _messageChannel;
+}
@@ -0,0 +1,127 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+/** The commit-graph file: one fixed-size record per commit, in the order
+ *  the commits were made, so every commit comes after its parents.  A
+ *  commit is known by its position in the file, and its record holds
+ *
+ *      sha1                                20 bytes
+ *      positions of its parents            two ints, NONE if absent
+ *      generation number                   int
+ *
+ *  where the generation of a commit is one more than the largest of its
+ *  parents' (1 for the initial commit), so a commit's ancestors all have
+ *  smaller generations.  Records are appended as commits are made and are
+ *  read through a memory map, so no commit objects need be loaded to walk
+ *  the history.
+ *  @author Chuhui Han
+ */
+class CommitGraph {
+
+    /** The position standing for "no parent". */
+    static final int NONE = -1;
+    /** Marks the start of a commit-graph file. */
+    static final int MAGIC = 0x47475246;
+    /** The commit-graph format version. */
+    static final int VERSION = 1;
+    /** Bytes before the first record. */
+    static final int HEADER = 8;
+    /** Bytes in one record. */
+    static final int RECORD = PackIndex.ID_BYTES + 12;
+
+    /** The commit graph in FILE, which is created empty if missing. */
+    CommitGraph(File file) {
+        _file = file;
+        if (!file.exists()) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            header.putInt(MAGIC).putInt(VERSION);
+            Utils.writeContents(file, (Object) header.array());
+        }
+    }
+
+    /** Return the number of commits in the graph. */
+    int size() {
+        return (map().capacity() - HEADER) / RECORD;
+    }
+
+    /** Append the commit with sha1 ID, whose parents are at positions
+     *  PARENT1 and PARENT2 (either may be NONE), and return its
+     *  position. */
+    int add(ObjectId id, int parent1, int parent2) {
+        int generation = 1;
+        if (parent1 != NONE) {
+            generation = Math.max(generation, generation(parent1) + 1);
+        }
+        if (parent2 != NONE) {
+            generation = Math.max(generation, generation(parent2) + 1);
+        }
+        int position = size();
+        ByteBuffer record = ByteBuffer.allocate(RECORD);
+        id.write(record);
+        record.putInt(parent1).putInt(parent2).putInt(generation);
+        try {
+            Files.write(_file.toPath(), record.array(),
+                        StandardOpenOption.APPEND);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        _map = null;
+        return position;
+    }
+
+    /** Return the sha1 of the commit at POSITION. */
+    ObjectId idAt(int position) {
+        return ObjectId.read(map(), record(position));
+    }
+
+    /** Return the position of the first parent of the commit at POSITION,
+     *  or NONE. */
+    int parent1(int position) {
+        return map().getInt(record(position) + PackIndex.ID_BYTES);
+    }
+
+    /** Return the position of the second parent of the commit at
+     *  POSITION, or NONE. */
+    int parent2(int position) {
+        return map().getInt(record(position) + PackIndex.ID_BYTES + 4);
+    }
+
+    /** Return the generation number of the commit at POSITION. */
+    int generation(int position) {
+        return map().getInt(record(position) + PackIndex.ID_BYTES + 8);
+    }
+
+    /** Return the offset of the record at POSITION. */
+    private int record(int position) {
+        return HEADER + position * RECORD;
+    }
+
+    /** Return the mapped file, mapping it again if it has grown. */
+    private MappedByteBuffer map() {
+        if (_map == null) {
+            try (FileChannel channel = FileChannel.open(_file.toPath(),
+                                                    StandardOpenOption.READ)) {
+                _map = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                                   channel.size());
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+            if (_map.getInt(0) != MAGIC || _map.getInt(4) != VERSION) {
+                throw new IllegalArgumentException("bad commit graph");
+            }
+        }
+        return _map;
+    }
+
+    /** The commit-graph file. */
+    private final File _file;
+    /** The mapped file, or null if not mapped since the last append. */
+    private MappedByteBuffer _map;
+}
@@ -0,0 +1,147 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/** An index of every commit sha1, for resolving abbreviated ids and for
+ *  finding a commit's position in the CommitGraph.  Most ids sit in a
+ *  sorted PackIndex file, recording positions as offsets, that is
+ *  binary-searched in place; ids of recent commits are appended to a short
+ *  journal, which is merged into the sorted file once it holds COMPACT_AT
+ *  ids.  Adding a commit thus never rebuilds the index, and resolving a
+ *  prefix costs O(log n).
+ *  @author Chuhui Han
+ */
+class CommitIndex {
+
+    /** Journal length at which it is merged into the sorted file. */
+    static final int COMPACT_AT = 1024;
+
+    /** An index whose sorted ids are in SORTED and recent ones in
+     *  JOURNAL.  Neither need exist yet. */
+    CommitIndex(File sorted, File journal) {
+        _sorted = sorted;
+        _journal = journal;
+    }
+
+    /** Record the commit with full sha1 ID, at POSITION in the commit
+     *  graph. */
+    void add(ObjectId id, int position) {
+        try {
+            Files.write(_journal.toPath(), (id + " " + position + "\n")
+                            .getBytes(StandardCharsets.UTF_8),
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.APPEND);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        _recent = null;
+        if (journal().size() >= COMPACT_AT) {
+            TreeMap<ObjectId, Long> entries = new TreeMap<>();
+            PackIndex index = sorted();
+            for (int k = 0; index != null && k < index.size(); k += 1) {
+                entries.put(index.idAt(k), index.offsetAt(k));
+            }
+            for (Map.Entry<ObjectId, Integer> entry
+                     : journal().entrySet()) {
+                entries.put(entry.getKey(), (long) entry.getValue());
+            }
+            write(entries);
+        }
+    }
+
+    /** Return the full sha1 of the one commit whose sha1 starts with
+     *  PREFIX, or null if there is none.  Throws a GitletException if more
+     *  than one commit matches. */
+    ObjectId resolve(String prefix) {
+        TreeSet<ObjectId> found = new TreeSet<>();
+        PackIndex index = sorted();
+        if (index != null) {
+            found.addAll(index.matches(prefix, 2));
+        }
+        for (ObjectId id : journal().keySet()) {
+            if (id.toString().startsWith(prefix)) {
+                found.add(id);
+            }
+        }
+        if (found.size() > 1) {
+            throw Utils.error("Ambiguous commit id.");
+        }
+        return found.isEmpty() ? null : found.first();
+    }
+
+    /** Return the commit-graph position of the commit with full sha1 ID,
+     *  or CommitGraph.NONE if it is not indexed. */
+    int position(ObjectId id) {
+        Integer recent = journal().get(id);
+        if (recent != null) {
+            return recent;
+        }
+        PackIndex index = sorted();
+        long result = index == null ? -1 : index.lookup(id);
+        return result == -1 ? CommitGraph.NONE : (int) result;
+    }
+
+    /** Replace the sorted file by one holding ENTRIES and empty the
+     *  journal. */
+    private void write(TreeMap<ObjectId, Long> entries) {
+        File temp = new File(_sorted.getPath() + ".tmp");
+        try {
+            PackIndex.write(temp, entries);
+            Files.move(temp.toPath(), _sorted.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        _journal.delete();
+        _recent = null;
+        _index = null;
+    }
+
+    /** Return the sorted ids, or null if there are none yet. */
+    private PackIndex sorted() {
+        if (_index == null && _sorted.isFile()) {
+            _index = new PackIndex(_sorted);
+        }
+        return _index;
+    }
+
+    /** Return the ids in the journal, mapped to their positions. */
+    private Map<ObjectId, Integer> journal() {
+        if (_recent == null) {
+            _recent = new LinkedHashMap<>();
+            if (_journal.isFile()) {
+                List<String> lines;
+                try {
+                    lines = Files.readAllLines(_journal.toPath());
+                } catch (IOException excp) {
+                    throw new IllegalArgumentException(excp.getMessage());
+                }
+                for (String line : lines) {
+                    String[] fields = line.split(" ");
+                    _recent.put(ObjectId.parse(fields[0]),
+                                Integer.parseInt(fields[1]));
+                }
+            }
+        }
+        return _recent;
+    }
+
+    /** The file of sorted ids. */
+    private final File _sorted;
+    /** The file of recently added ids. */
+    private final File _journal;
+    /** The mapped sorted ids, once opened. */
+    private PackIndex _index;
+    /** The journal's contents, once read. */
+    private LinkedHashMap<ObjectId, Integer> _recent;
+}
@@ -0,0 +1,121 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+/** Line-level deltas between two versions of a file.  A delta is a
+ *  sequence of instructions that rebuild the target version: copy a range
+ *  of bytes from the base version, or insert bytes carried in the delta.
+ *  The ranges come from the line diffs computed by Diff.
+ *  @author Chuhui Han
+ */
+class Delta {
+
+    /** Instruction copying a byte range of the base. */
+    static final int COPY = 0;
+    /** Instruction inserting bytes carried in the delta. */
+    static final int INSERT = 1;
+
+    /** Return a delta that rebuilds TARGET from BASE. */
+    static byte[] create(byte[] base, byte[] target) {
+        ArrayList<String> baseLines = lines(base);
+        ArrayList<String> targetLines = lines(target);
+        int[] baseStarts = starts(baseLines);
+        int[] targetStarts = starts(targetLines);
+        Diff diff = new Diff();
+        diff.setSequences(baseLines, targetLines);
+        int[] edits = diff.diffs();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(target.length);
+            int k1 = 0;
+            for (int k = 0; k < edits.length; k += 4) {
+                if (edits[k] > k1) {
+                    copy(out, baseStarts, k1, edits[k]);
+                }
+                if (edits[k + 3] > 0) {
+                    int from = targetStarts[edits[k + 2]];
+                    int to = targetStarts[edits[k + 2] + edits[k + 3]];
+                    out.writeByte(INSERT);
+                    out.writeInt(to - from);
+                    out.write(target, from, to - from);
+                }
+                k1 = edits[k] + edits[k + 1];
+            }
+            if (k1 < baseLines.size()) {
+                copy(out, baseStarts, k1, baseLines.size());
+            }
+            out.close();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Return the version rebuilt by applying DELTA to BASE. */
+    static byte[] apply(byte[] base, byte[] delta) {
+        try {
+            DataInputStream in =
+                new DataInputStream(new ByteArrayInputStream(delta));
+            byte[] result = new byte[in.readInt()];
+            int k = 0;
+            while (k < result.length) {
+                int op = in.readByte();
+                if (op == COPY) {
+                    int from = in.readInt();
+                    int len = in.readInt();
+                    System.arraycopy(base, from, result, k, len);
+                    k += len;
+                } else {
+                    int len = in.readInt();
+                    in.readFully(result, k, len);
+                    k += len;
+                }
+            }
+            return result;
+        } catch (IOException | IndexOutOfBoundsException excp) {
+            throw new IllegalArgumentException("corrupt delta");
+        }
+    }
+
+    /** Write a COPY of base lines [FIRST .. LAST - 1], whose byte offsets
+     *  are given by STARTS, to OUT. */
+    private static void copy(DataOutputStream out, int[] starts,
+                             int first, int last) throws IOException {
+        out.writeByte(COPY);
+        out.writeInt(starts[first]);
+        out.writeInt(starts[last] - starts[first]);
+    }
+
+    /** Return DATA split after each newline.  The lines are decoded as
+     *  ISO-8859-1, so each char is one byte and any contents survive. */
+    static ArrayList<String> lines(byte[] data) {
+        String text = new String(data, StandardCharsets.ISO_8859_1);
+        ArrayList<String> result = new ArrayList<>();
+        int start = 0;
+        while (start < text.length()) {
+            int end = text.indexOf('\n', start);
+            end = end == -1 ? text.length() : end + 1;
+            result.add(text.substring(start, end));
+            start = end;
+        }
+        return result;
+    }
+
+    /** Return the byte offset of the start of each of LINES, followed by
+     *  the total length. */
+    private static int[] starts(ArrayList<String> lines) {
+        int[] result = new int[lines.size() + 1];
+        for (int i = 0; i < lines.size(); i += 1) {
+            result[i + 1] = result[i] + lines.get(i).length();
+        }
+        return result;
+    }
+}
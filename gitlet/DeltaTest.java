@@ -0,0 +1,113 @@
+package gitlet;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of Delta.
+ *  @author Chuhui Han
+ */
+public class DeltaTest {
+
+    /** Return the bytes of TEXT. */
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /** Check that applying the delta from BASE to TARGET to BASE gives
+     *  TARGET. */
+    private static void roundTrip(byte[] base, byte[] target) {
+        byte[] delta = Delta.create(base, target);
+        assertNotNull(delta);
+        assertArrayEquals(target, Delta.apply(base, delta));
+    }
+
+    /** Check deltas between small versions differing at the start, the
+     *  middle and the end, and in their final newlines. */
+    @Test
+    public void simpleEdits() {
+        String[] versions = {
+            "", "a\n", "a", "a\nb\nc\n", "x\nb\nc\n", "a\nb\nc\nd\n",
+            "a\nc\n", "a\nb\nc", "b\nc\n", "a\r\nb\r\n",
+        };
+        for (String base : versions) {
+            for (String target : versions) {
+                roundTrip(bytes(base), bytes(target));
+            }
+        }
+    }
+
+    /** Check that a delta between versions sharing most lines is much
+     *  smaller than the target. */
+    @Test
+    public void sharedLinesAreCopied() {
+        StringBuilder base = new StringBuilder();
+        for (int k = 0; k < 1000; k += 1) {
+            base.append("line ").append(k).append('\n');
+        }
+        String target = base.toString().replace("line 500\n", "changed\n");
+        byte[] delta = Delta.create(bytes(base.toString()), bytes(target));
+        assertArrayEquals(bytes(target),
+                          Delta.apply(bytes(base.toString()), delta));
+        assertTrue(delta.length < 100);
+    }
+
+    /** Check deltas between random versions of random binary lines,
+     *  including every byte value. */
+    @Test
+    public void randomRoundTrip() {
+        Random rand = new Random(61);
+        for (int trial = 0; trial < 200; trial += 1) {
+            byte[] base = randomLines(rand);
+            byte[] target = rand.nextBoolean() ? randomLines(rand)
+                : mutate(rand, base);
+            roundTrip(base, target);
+        }
+    }
+
+    /** Check that a delta that does not fit its base is refused. */
+    @Test
+    public void corruptDelta() {
+        byte[] delta = Delta.create(bytes("a\nb\nc\n"), bytes("a\nc\n"));
+        try {
+            Delta.apply(bytes("a\n"), delta);
+            fail("applied a delta to the wrong base");
+        } catch (IllegalArgumentException excp) {
+            assertEquals("corrupt delta", excp.getMessage());
+        }
+    }
+
+    /** Return up to 40 random lines from a small set, using RAND, so that
+     *  versions share lines. */
+    private static byte[] randomLines(Random rand) {
+        StringBuilder result = new StringBuilder();
+        for (int k = rand.nextInt(40); k > 0; k -= 1) {
+            result.append((char) rand.nextInt(256)).append(rand.nextInt(4))
+                .append('\n');
+        }
+        if (rand.nextBoolean()) {
+            result.append("no newline");
+        }
+        return bytes(result.toString());
+    }
+
+    /** Return DATA with a few random bytes changed, added or removed,
+     *  using RAND. */
+    private static byte[] mutate(Random rand, byte[] data) {
+        StringBuilder result =
+            new StringBuilder(new String(data, StandardCharsets.ISO_8859_1));
+        for (int k = rand.nextInt(4); k > 0; k -= 1) {
+            int at = rand.nextInt(result.length() + 1);
+            if (at < result.length() && rand.nextBoolean()) {
+                result.deleteCharAt(at);
+            } else {
+                result.insert(at, rand.nextBoolean() ? '\n'
+                              : (char) rand.nextInt(256));
+            }
+        }
+        return bytes(result.toString());
+    }
+
+}
@@ -6,15 +6,13 @@ import java.util.List;
 import java.io.File;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 
 import java.io.IOException;
 import java.nio.file.InvalidPathException;
 
-import static java.lang.Math.max;
-
 /** A comparison of two sequences of strings.  After executing setSequences to
  *  initialize the data, methods allow computing longest common sequences
  *  and differences in the form of edits needed to convert one sequence to the
@@ -24,11 +22,12 @@ public class Diff {
 
     /** Set the sequences currently being compared to the contents
      *  of SEQ1 and SEQ2 (as delivered by their iterators). */
-    public void setSequences(Collection<String> seq1, Collection<String> seq2) {
+    public void setSequences(Collection<String> seq1,
+                             Collection<String> seq2) {
         _lines1 = new ArrayList<>(seq1);
         _lines2 = new ArrayList<>(seq2);
-        _lls = null;
-        _todo = null;
+        _tokens1 = _tokens2 = null;
+        _common = _diffs = null;
     }
 
     /** Set the sequences currently being compared to the contents
@@ -48,8 +47,8 @@ public class Diff {
                  excp) {
             _lines2 = Collections.emptyList();
         }
-        _lls = null;
-        _todo = null;
+        _tokens1 = _tokens2 = null;
+        _common = _diffs = null;
     }
 
     /** Return the first of the current sequences. */
@@ -73,62 +72,22 @@ public class Diff {
     }
 
     /** Return the length of the longest subsequence of the first K1 and K2
-     *  items, respectively, of the current data sequences. */
+     *  items, respectively, of the current data sequences, or 0 if either
+     *  is out of range.  Only the whole sequences' answer is kept, so
+     *  other prefixes are compared afresh on each call. */
     public int lls(int k1, int k2) {
         checkData();
-        if (_lls == null) {
-            _lls = new int[_lines1.size() + 1][_lines2.size() + 1];
-            for (int[] row : _lls) {
-                Arrays.fill(row, -1);
-            }
-        }
-        if (k1 == 0 || k2 == 0
+        if (k1 <= 0 || k2 <= 0
             || k1 > _lines1.size() || k2 > _lines2.size()) {
             return 0;
-        } else if (_lls[k1][k2] == -1) {
-            initStack();
-            push(k1, k2, 0);
-            while (!empty()) {
-                pop();
-                if (_llsTop1 == 0 || _llsTop2 == 0) {
-                    _lls[_llsTop1][_llsTop2] = 0;
-                } else if (_lls[_llsTop1][_llsTop2] != -1) {
-                    continue;
-                } else {
-                    switch (_llsState) {
-                    case 0:
-                        if (_lines1.get(_llsTop1 - 1)
-                            .equals(_lines2.get(_llsTop2 - 1))) {
-                            push(_llsTop1, _llsTop2, 4);
-                            push(_llsTop1 - 1, _llsTop2 - 1, 0);
-                        } else {
-                            push(_llsTop1, _llsTop2, 1);
-                        }
-                        continue;
-                    case 1:
-                        push(_llsTop1, _llsTop2, 2);
-                        push(_llsTop1, _llsTop2 - 1, 0);
-                        continue;
-                    case 2:
-                        push(_llsTop1, _llsTop2, 3);
-                        push(_llsTop1 - 1, _llsTop2, 0);
-                        continue;
-                    case 3:
-                        _lls[_llsTop1][_llsTop2]
-                            = max(_lls[_llsTop1][_llsTop2 - 1],
-                                  _lls[_llsTop1 - 1][_llsTop2]);
-                        continue;
-                    case 4:
-                        _lls[_llsTop1][_llsTop2]
-                            = _lls[_llsTop1 - 1][_llsTop2 - 1] + 1;
-                        continue;
-                    default:
-                        assert false;
-                    }
-                }
-            }
         }
-        return _lls[k1][k2];
+        int[] common = k1 == _lines1.size() && k2 == _lines2.size()
+            ? common() : commonSubsequence(k1, k2);
+        int result = 0;
+        for (int k = 2; k < common.length; k += 3) {
+            result += common[k];
+        }
+        return result;
     }
 
     /** Return the length of the longest common subsequence of the current
@@ -142,10 +101,160 @@ public class Diff {
      *  content. */
     public boolean sequencesEqual() {
         checkData();
-        if (_lines1.size() != _lines2.size()) {
-            return false;
+        return _lines1.equals(_lines2);
+    }
+
+    /** Return largest common subsequence of the sequences being compared as
+     *  a sequence of 3n values s01, s02, L0, s11, s12, L1,..., where
+     *  si1 is the starting line position of the subsequence in the
+     *  first file (0-based), si2 is the starting position in the second
+     *  file, and Li is the length of the subsequence. */
+    public int[] commonSubsequence() {
+        return common().clone();
+    }
+
+    /** Return the common subsequence of the whole sequences, computing it
+     *  only once for each setSequences. */
+    private int[] common() {
+        checkData();
+        if (_common == null) {
+            _common = commonSubsequence(_lines1.size(), _lines2.size());
+        }
+        return _common;
+    }
+
+    /** Return the largest common subsequence of the first K1 and K2 items
+     *  of the current data sequences, in the form of commonSubsequence().
+     *  It is found by Myers' O(ND) algorithm, in its linear-space form:
+     *  each step finds the middle snake of a shortest edit script and
+     *  recurses on the ranges before and after it. */
+    private int[] commonSubsequence(int k1, int k2) {
+        tokenize();
+        int span = k1 + k2 + 1;
+        _forward = new int[2 * span + 1];
+        _backward = new int[2 * span + 1];
+        _runs = new int[3 * 16];
+        _nruns = 0;
+        compare(0, k1, 0, k2);
+        _forward = _backward = null;
+        return Arrays.copyOf(_runs, 3 * _nruns);
+    }
+
+    /** Add to _runs the common subsequence of items [A0 .. A1 - 1] of the
+     *  first sequence and [B0 .. B1 - 1] of the second. */
+    private void compare(int a0, int a1, int b0, int b1) {
+        int start = a0;
+        while (a0 < a1 && b0 < b1 && _tokens1[a0] == _tokens2[b0]) {
+            a0 += 1;
+            b0 += 1;
+        }
+        addRun(start, b0 - (a0 - start), a0 - start);
+        int end = a1;
+        while (a0 < a1 && b0 < b1 && _tokens1[a1 - 1] == _tokens2[b1 - 1]) {
+            a1 -= 1;
+            b1 -= 1;
+        }
+        if (a0 < a1 && b0 < b1) {
+            int[] snake = middleSnake(a0, a1, b0, b1);
+            compare(a0, snake[0], b0, snake[1]);
+            addRun(snake[0], snake[1], snake[2] - snake[0]);
+            compare(snake[2], a1, snake[3], b1);
+        }
+        addRun(a1, b1, end - a1);
+    }
+
+    /** Return the middle snake of a shortest edit script from items
+     *  [A0 .. A1 - 1] of the first sequence to [B0 .. B1 - 1] of the
+     *  second, as {x0, y0, x1, y1}: it runs from (x0, y0) to (x1, y1). */
+    private int[] middleSnake(int a0, int a1, int b0, int b1) {
+        int n = a1 - a0, m = b1 - b0, delta = n - m;
+        boolean odd = (delta & 1) != 0;
+        int off = (n + m + 1) / 2 + 1;
+        int[] vf = _forward, vb = _backward;
+        vf[off + 1] = 0;
+        vb[off + 1] = 0;
+        for (int d = 0; d <= (n + m + 1) / 2; d += 1) {
+            for (int k = -d; k <= d; k += 2) {
+                int x = k == -d || (k != d && vf[off + k - 1] < vf[off + k + 1])
+                    ? vf[off + k + 1] : vf[off + k - 1] + 1;
+                int y = x - k, x0 = x, y0 = y;
+                while (x < n && y < m
+                       && _tokens1[a0 + x] == _tokens2[b0 + y]) {
+                    x += 1;
+                    y += 1;
+                }
+                vf[off + k] = x;
+                int kb = delta - k;
+                if (odd && kb >= -(d - 1) && kb <= d - 1
+                    && x + vb[off + kb] >= n) {
+                    return new int[] { a0 + x0, b0 + y0, a0 + x, b0 + y };
+                }
+            }
+            for (int kb = -d; kb <= d; kb += 2) {
+                int x = kb == -d
+                    || (kb != d && vb[off + kb - 1] < vb[off + kb + 1])
+                    ? vb[off + kb + 1] : vb[off + kb - 1] + 1;
+                int y = x - kb, x0 = x, y0 = y;
+                while (x < n && y < m
+                       && _tokens1[a1 - 1 - x] == _tokens2[b1 - 1 - y]) {
+                    x += 1;
+                    y += 1;
+                }
+                vb[off + kb] = x;
+                int k = delta - kb;
+                if (!odd && k >= -d && k <= d && x + vf[off + k] >= n) {
+                    return new int[] { a1 - x, b1 - y, a1 - x0, b1 - y0 };
+                }
+            }
+        }
+        throw new IllegalStateException("no middle snake");
+    }
+
+    /** Add the run of LEN items starting at S1 in the first sequence and
+     *  S2 in the second to _runs, joining it to the last run if they
+     *  touch. */
+    private void addRun(int s1, int s2, int len) {
+        if (len == 0) {
+            return;
+        }
+        int last = 3 * (_nruns - 1);
+        if (_nruns > 0 && _runs[last] + _runs[last + 2] == s1
+            && _runs[last + 1] + _runs[last + 2] == s2) {
+            _runs[last + 2] += len;
+            return;
+        }
+        if (3 * _nruns == _runs.length) {
+            _runs = Arrays.copyOf(_runs, 2 * _runs.length);
+        }
+        _runs[3 * _nruns] = s1;
+        _runs[3 * _nruns + 1] = s2;
+        _runs[3 * _nruns + 2] = len;
+        _nruns += 1;
+    }
+
+    /** Set _tokens1 and _tokens2 to the current sequences with each
+     *  distinct line replaced by a distinct int, if not done already. */
+    private void tokenize() {
+        if (_tokens1 != null) {
+            return;
+        }
+        HashMap<String, Integer> ids = new HashMap<>();
+        _tokens1 = tokenize(_lines1, ids);
+        _tokens2 = tokenize(_lines2, ids);
+    }
+
+    /** Return the ints standing for LINES, numbering lines not yet in
+     *  IDS. */
+    private static int[] tokenize(List<String> lines,
+                                  HashMap<String, Integer> ids) {
+        int[] result = new int[lines.size()];
+        int i = 0;
+        for (String line : lines) {
+            Integer id = ids.putIfAbsent(line, ids.size());
+            result[i] = id == null ? ids.size() - 1 : id;
+            i += 1;
         }
-        return lls(_lines1.size(), _lines2.size()) == _lines1.size();
+        return result;
     }
 
     /** Return an array containing the int values of the items in LIST. */
@@ -160,38 +269,6 @@ public class Diff {
         return result;
     }
 
-    /** Return largest common subsequence of the sequences being compared as
-     *  a sequence of 3n values s01, s02, L0, s11, s12, L1,..., where
-     *  si1 is the starting line position of the subsequence in the
-     *  first file (0-based), si2 is the starting position in the second
-     *  file, and Li is the length of the subsequence. */
-    public int[] commonSubsequence() {
-        ArrayDeque<Integer> resultList = new ArrayDeque<>();
-
-        int k1, k2;
-        k1 = _lines1.size(); k2 = _lines2.size();
-        while (k1 > 0 && k2 > 0) {
-            int ls = lls(k1, k2);
-            if (lls(k1 - 1, k2) == ls) {
-                k1 -= 1;
-            } else if (lls(k1, k2 - 1) == ls) {
-                k2 -= 1;
-            } else {
-                int L;
-                L = 1;
-                while (k1 > L && k2 > L && lls(k1 - L - 1, k2 - L) != ls - L
-                       && lls(k1 - L, k2 - L  - 1) != ls - L) {
-                    L += 1;
-                }
-                resultList.offerFirst(L);
-                resultList.offerFirst(k2 - L);
-                resultList.offerFirst(k1 - L);
-                k1 -= L; k2 -= L;
-            }
-        }
-        return toIntArr(resultList);
-    }
-
     /** Return the edit that converts the first of the sequences being compared
      *  to the second. This is a sequence of 4n values d0, dL0, a0, aL0, ...,
      *  where the lines [di .. di + dL0 - 1] are the ranges of line
@@ -201,7 +278,10 @@ public class Diff {
      *  dLi or aLi, but not both, may be 0, indicating respectively simple
      *  removal of lines or addition of lines. */
     public int[] diffs() {
-        int[] common = commonSubsequence();
+        if (_diffs != null) {
+            return _diffs.clone();
+        }
+        int[] common = common();
         ArrayList<Integer> result = new ArrayList<>();
         int e1, e2;
         e1 = e2 = 0;
@@ -221,7 +301,8 @@ public class Diff {
             result.add(e2);
             result.add(_lines2.size() - e2);
         }
-        return toIntArr(result);
+        _diffs = toIntArr(result);
+        return _diffs.clone();
     }
 
     /** Raise an exception if there are no current data sequences for
@@ -232,45 +313,24 @@ public class Diff {
         }
     }
 
-    /** Initialize work stack for lls. */
-    private void initStack() {
-        _todo = new int[6 * (_lines1.size() +  _lines2.size() + 1)];
-        _todop = 0;
-    }
-
-    /** Push an item on the work stack for computing lls(I1, I2). STATE
-     *  indicates which inner recursive calls have happened so far for these
-     *  arguments. */
-    private void push(int i1, int i2, int state) {
-        _todo[_todop + 1] = i1;
-        _todo[_todop + 2] = i2;
-        _todo[_todop] = state;
-        _todop += 3;
-    }
-
-    /** Pop an item from the work stack. */
-    private void pop() {
-        _todop -= 3;
-        _llsTop1 = _todo[_todop + 1]; _llsTop2 = _todo[_todop + 2];
-        _llsState = _todo[_todop];
-    }
-
-    /** Return true iff the work stack is empty. */
-    private boolean empty() {
-        return _todop <= 0;
-    }
-
     /** The sequences being compared. */
     private List<String> _lines1, _lines2;
 
-    /** The memo table for longest common subsequence.  _lls[a][b] contains the
-     *  length of the longest common sequence of the prefixes of the current
-     *  data sequences of lengths a and b, or -1 if not calculated. */
-    private int[][] _lls;
+    /** The sequences being compared, with each distinct line replaced by
+     *  its own int, or null if not yet computed. */
+    private int[] _tokens1, _tokens2;
+
+    /** The furthest reaching paths of middleSnake along each diagonal,
+     *  forward and backward, shared by all its calls. */
+    private int[] _forward, _backward;
+
+    /** The common subsequence and edit of the current sequences, or null
+     *  if not yet computed. */
+    private int[] _common, _diffs;
 
-    /** A stack structure used by lls. */
-    private int[] _todo;
-    /** Structure for the work queue used by lls. */
-    private int _todop, _llsState, _llsTop1, _llsTop2;
+    /** The common runs found so far, as triples of commonSubsequence(). */
+    private int[] _runs;
+    /** Number of triples in _runs. */
+    private int _nruns;
 
 }
@@ -0,0 +1,178 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of Diff, against a quadratic longest-common-subsequence table.
+ *  @author Chuhui Han
+ */
+public class DiffTest {
+
+    /** Return the length of the longest common subsequence of A and B,
+     *  by the textbook dynamic program. */
+    static int lcs(List<String> a, List<String> b) {
+        int[][] len = new int[a.size() + 1][b.size() + 1];
+        for (int i = 1; i <= a.size(); i += 1) {
+            for (int j = 1; j <= b.size(); j += 1) {
+                len[i][j] = a.get(i - 1).equals(b.get(j - 1))
+                    ? len[i - 1][j - 1] + 1
+                    : Math.max(len[i - 1][j], len[i][j - 1]);
+            }
+        }
+        return len[a.size()][b.size()];
+    }
+
+    /** Return a list of N lines drawn at random from the first SYMBOLS
+     *  letters, using RAND. */
+    static List<String> randomLines(Random rand, int n, int symbols) {
+        ArrayList<String> result = new ArrayList<>();
+        for (int k = 0; k < n; k += 1) {
+            result.add(String.valueOf((char) ('a' + rand.nextInt(symbols))));
+        }
+        return result;
+    }
+
+    /** Return A with the edit EDITS, in the form of Diff.diffs(),
+     *  applied, taking the added lines from B. */
+    static List<String> apply(List<String> a, List<String> b, int[] edits) {
+        ArrayList<String> result = new ArrayList<>();
+        int next = 0;
+        for (int k = 0; k < edits.length; k += 4) {
+            result.addAll(a.subList(next, edits[k]));
+            result.addAll(b.subList(edits[k + 2],
+                                    edits[k + 2] + edits[k + 3]));
+            next = edits[k] + edits[k + 1];
+        }
+        result.addAll(a.subList(next, a.size()));
+        return result;
+    }
+
+    /** Return the diffs() of A and B. */
+    static int[] diffs(List<String> a, List<String> b) {
+        Diff diff = new Diff();
+        diff.setSequences(a, b);
+        return diff.diffs();
+    }
+
+    /** Check the common subsequence, the length of the edit script and
+     *  the result of applying it for many random pairs of sequences. */
+    @Test
+    public void randomAgainstOracle() {
+        Random rand = new Random(61);
+        for (int trial = 0; trial < 500; trial += 1) {
+            int symbols = 1 + rand.nextInt(6);
+            List<String> a = randomLines(rand, rand.nextInt(30), symbols);
+            List<String> b = randomLines(rand, rand.nextInt(30), symbols);
+            Diff diff = new Diff();
+            diff.setSequences(a, b);
+            int expected = lcs(a, b);
+            assertEquals(expected, diff.lls());
+
+            int[] common = diff.commonSubsequence();
+            int length = 0, end1 = 0, end2 = 0;
+            for (int k = 0; k < common.length; k += 3) {
+                assertTrue(common[k] >= end1 && common[k + 1] >= end2);
+                assertEquals(a.subList(common[k], common[k] + common[k + 2]),
+                             b.subList(common[k + 1],
+                                       common[k + 1] + common[k + 2]));
+                end1 = common[k] + common[k + 2];
+                end2 = common[k + 1] + common[k + 2];
+                length += common[k + 2];
+            }
+            assertEquals(expected, length);
+
+            int[] edits = diff.diffs();
+            int changed = 0;
+            for (int k = 0; k < edits.length; k += 4) {
+                assertTrue(edits[k + 1] > 0 || edits[k + 3] > 0);
+                changed += edits[k + 1] + edits[k + 3];
+            }
+            assertEquals(a.size() + b.size() - 2 * expected, changed);
+            assertEquals(b, apply(a, b, edits));
+        }
+    }
+
+    /** Check lls of prefixes against the oracle, and that prefixes out of
+     *  range have none in common. */
+    @Test
+    public void prefixLengths() {
+        Random rand = new Random(61);
+        List<String> a = randomLines(rand, 20, 3);
+        List<String> b = randomLines(rand, 15, 3);
+        Diff diff = new Diff();
+        diff.setSequences(a, b);
+        for (int k1 = 0; k1 <= a.size(); k1 += 1) {
+            for (int k2 = 0; k2 <= b.size(); k2 += 1) {
+                assertEquals(lcs(a.subList(0, k1), b.subList(0, k2)),
+                             diff.lls(k1, k2));
+            }
+        }
+        assertEquals(0, diff.lls(a.size() + 1, b.size()));
+        assertEquals(0, diff.lls(a.size(), b.size() + 1));
+        assertEquals(0, diff.lls(-1, b.size()));
+    }
+
+    /** Check that the results kept for one pair of sequences are returned
+     *  unchanged by later calls, and dropped for the next pair. */
+    @Test
+    public void resultsKept() {
+        Diff diff = new Diff();
+        diff.setSequences(Arrays.asList("a", "b"), Arrays.asList("b", "c"));
+        int[] edits = diff.diffs();
+        int[] common = diff.commonSubsequence();
+        edits[0] = common[0] = 99;
+        assertArrayEquals(new int[] { 0, 1, 0, 0, 2, 0, 1, 1 },
+                          diff.diffs());
+        assertArrayEquals(new int[] { 1, 0, 1 }, diff.commonSubsequence());
+        assertEquals(1, diff.lls());
+        diff.setSequences(Arrays.asList("a", "b"), Arrays.asList("a", "b"));
+        assertArrayEquals(new int[0], diff.diffs());
+        assertEquals(2, diff.lls());
+    }
+
+    /** Check diffs() when either sequence is empty. */
+    @Test
+    public void emptySequences() {
+        List<String> none = Collections.emptyList();
+        List<String> ab = Arrays.asList("a", "b");
+        assertArrayEquals(new int[0], diffs(none, none));
+        assertArrayEquals(new int[] { 0, 0, 0, 2 }, diffs(none, ab));
+        assertArrayEquals(new int[] { 0, 2, 0, 0 }, diffs(ab, none));
+    }
+
+    /** Check that identical sequences have no edits. */
+    @Test
+    public void identicalSequences() {
+        List<String> abc = Arrays.asList("a", "b", "c");
+        assertArrayEquals(new int[0], diffs(abc, new ArrayList<>(abc)));
+    }
+
+    /** Check that sequences with nothing in common are replaced whole. */
+    @Test
+    public void disjointSequences() {
+        assertArrayEquals(new int[] { 0, 2, 0, 3 },
+                          diffs(Arrays.asList("a", "b"),
+                                Arrays.asList("x", "y", "z")));
+    }
+
+    /** Check edits at only the start or only the end of a sequence. */
+    @Test
+    public void prefixAndSuffix() {
+        List<String> abc = Arrays.asList("a", "b", "c");
+        assertArrayEquals(new int[] { 2, 1, 2, 0 },
+                          diffs(abc, Arrays.asList("a", "b")));
+        assertArrayEquals(new int[] { 3, 0, 3, 1 },
+                          diffs(abc, Arrays.asList("a", "b", "c", "d")));
+        assertArrayEquals(new int[] { 0, 1, 0, 0 },
+                          diffs(abc, Arrays.asList("b", "c")));
+        assertArrayEquals(new int[] { 0, 0, 0, 1 },
+                          diffs(abc, Arrays.asList("z", "a", "b", "c")));
+    }
+
+}
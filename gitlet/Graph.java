@@ -1,95 +1,174 @@
 package gitlet;
 
-import java.io.File;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.Map;
+import java.util.Arrays;
 
+/** The commit history as a graph over dense int positions, loaded from the
+ *  commit-graph file into primitive arrays.  Queries paint commits with
+ *  bit flags in a byte array and visit them through an int heap ordered
+ *  by decreasing generation number, so each one allocates almost nothing
+ *  beyond the flags and the heap, and stops as soon as the generation
+ *  numbers show that the answer cannot change.
+ *  @author Chuhui Han
+ */
 public class Graph {
 
-    /** The second parent, only happens if merged. */
-    private Map<Node, ArrayList<Node>> adjacentNodes = new HashMap<>();
-    /** The second parent, only happens if merged. */
-    private Map<String, Node> nodeNames = new HashMap<>();
-    /** The second parent, only happens if merged. */
-    private ArrayList<Node> allNodes = new ArrayList<>();
-    /** The second parent, only happens if merged. */
-    private File allCommitDirectory = new File(".gitlet/allCommits/");
+    /** Flag of commits reached from the first commit of a query. */
+    private static final byte FIRST = 1;
+    /** Flag of commits reached from the second commit of a query. */
+    private static final byte SECOND = 2;
+    /** Flag of commits reached from both. */
+    private static final byte BOTH = FIRST | SECOND;
+    /** Flag of commits waiting in the heap. */
+    private static final byte QUEUED = 4;
 
-    Graph(LinkedList<String> allSha1) {
-        for (String sha1Code : allSha1) {
-            addNode(sha1Code);
+    /** The history recorded in COMMITS. */
+    Graph(CommitGraph commits) {
+        _size = commits.size();
+        _parent1 = new int[_size];
+        _parent2 = new int[_size];
+        _generation = new int[_size];
+        for (int k = 0; k < _size; k += 1) {
+            _parent1[k] = commits.parent1(k);
+            _parent2[k] = commits.parent2(k);
+            _generation[k] = commits.generation(k);
         }
+        _flags = new byte[_size];
+        _heap = new int[_size];
+    }
 
-        for (Node node : allNodes) {
-            File thisCommitFile = new File(allCommitDirectory
-                    + "/" + node.getLabel() + ".txt");
-            Commit thisCommit = Utils.readObject(thisCommitFile, Commit.class);
-            if (thisCommit.getParent() != null
-                    && thisCommit.getSecondParent() == null) {
-                addConnection(thisCommit.getSha1(),
-                        thisCommit.getParent().getSha1());
-            } else if (thisCommit.getParent() != null
-                    && thisCommit.getSecondParent() != null) {
-                addConnection(thisCommit.getSha1(),
-                        thisCommit.getParent().getSha1());
-                addConnection(thisCommit.getSha1(),
-                        thisCommit.getParent().getSha1());
+    /** Return the position of a latest common ancestor of the commits at
+     *  positions HEAD and OTHER, or CommitGraph.NONE if they have none.
+     *  Since a commit's descendants all have larger generations, every
+     *  path to a commit has been painted by the time it leaves the heap,
+     *  so the first one painted from both sides is a common ancestor that
+     *  no other common ancestor descends from, and the walk stops there. */
+    public int mergeBase(int head, int other) {
+        start();
+        paint(head, FIRST);
+        paint(other, SECOND);
+        while (_heapSize > 0) {
+            int k = pop();
+            if (_flags[k] == BOTH) {
+                return k;
             }
+            paintParents(k, _flags[k]);
         }
+        return CommitGraph.NONE;
     }
 
-    void addNode(String label) {
-        Node newNode = new Node(label);
-        nodeNames.putIfAbsent(label, newNode);
-        adjacentNodes.putIfAbsent(newNode, new ArrayList<>());
-        allNodes.add(newNode);
+    /** Return true iff the commit at position ANCESTOR is the commit at
+     *  DESCENDANT or one of its ancestors.  Commits with a smaller
+     *  generation than ANCESTOR cannot lead to it and are not visited. */
+    public boolean isAncestor(int ancestor, int descendant) {
+        start();
+        int floor = _generation[ancestor];
+        paint(descendant, FIRST);
+        while (_heapSize > 0) {
+            int k = pop();
+            if (k == ancestor) {
+                return true;
+            }
+            paintAbove(_parent1[k], floor);
+            paintAbove(_parent2[k], floor);
+        }
+        return false;
     }
 
-    void addConnection(String label1, String label2) {
-        adjacentNodes.get(nodeNames.get(label1)).add(nodeNames.get(label2));
-        adjacentNodes.get(nodeNames.get(label2)).add(nodeNames.get(label1));
-        nodeNames.get(label1).addParent(nodeNames.get(label2));
+    /** Paint the commit at position K with FIRST, unless K is
+     *  CommitGraph.NONE or its generation is below FLOOR. */
+    private void paintAbove(int k, int floor) {
+        if (k != CommitGraph.NONE && _generation[k] >= floor) {
+            paint(k, FIRST);
+        }
     }
 
-    public ArrayList<Node> getAdjNodes(String label) {
-        return adjacentNodes.get(nodeNames.get(label));
+    /** Paint the parents of the commit at position K with FLAGS. */
+    private void paintParents(int k, byte flags) {
+        if (_parent1[k] != CommitGraph.NONE) {
+            paint(_parent1[k], flags);
+        }
+        if (_parent2[k] != CommitGraph.NONE) {
+            paint(_parent2[k], flags);
+        }
     }
 
-    public void breathFirstSearch(String label, String color) {
-        LinkedList<Node> nodeLinkedList = new LinkedList<>();
-        nodeLinkedList.add(nodeNames.get(label));
-        HashMap<Node, Boolean> visited = new HashMap<>();
-        for (int i = 0; i < allNodes.size(); i++) {
-            visited.put(allNodes.get(i), false);
+    /** Add FLAGS to the commit at position K, queueing it if that changed
+     *  its flags and it is not already queued. */
+    private void paint(int k, byte flags) {
+        byte old = (byte) (_flags[k] & BOTH);
+        byte mixed = (byte) (old | flags);
+        if (mixed == old) {
+            return;
+        }
+        boolean queued = (_flags[k] & QUEUED) != 0;
+        _flags[k] = (byte) (mixed | (_flags[k] & QUEUED));
+        if (!queued) {
+            push(k);
         }
-        visited.replace(nodeNames.get(label), true);
+    }
 
-        while (!nodeLinkedList.isEmpty()) {
-            Node newNode = nodeLinkedList.pop();
-            ArrayList<Node> neighbors = getAdjNodes(newNode.getLabel());
+    /** Clear the flags and heap left by the previous query. */
+    private void start() {
+        Arrays.fill(_flags, (byte) 0);
+        _heapSize = 0;
+    }
 
-            for (Node node: neighbors) {
-                if (!visited.get(node)) {
-                    nodeLinkedList.add(node);
-                    visited.replace(node, true);
-                    if (!node.getParents().contains(newNode)) {
-                        if (color.equals("red")
-                                && node.getColor().equals("blue")) {
-                            node.setColor(color);
-                        }
-                    }
-                    if (color.equals("blue")) {
-                        node.setColor(color);
-                    }
-                }
-            }
+    /** Return true iff position A must leave the heap before B. */
+    private boolean before(int a, int b) {
+        if (_generation[a] != _generation[b]) {
+            return _generation[a] > _generation[b];
+        }
+        return a > b;
+    }
+
+    /** Add position K to the heap. */
+    private void push(int k) {
+        _flags[k] |= QUEUED;
+        int i = _heapSize;
+        _heapSize += 1;
+        while (i > 0 && before(k, _heap[(i - 1) / 2])) {
+            _heap[i] = _heap[(i - 1) / 2];
+            i = (i - 1) / 2;
         }
+        _heap[i] = k;
     }
 
-    public ArrayList<Node> getAllNodes() {
-        return allNodes;
+    /** Remove and return the position that comes first in the heap. */
+    private int pop() {
+        int result = _heap[0];
+        _flags[result] &= ~QUEUED;
+        _heapSize -= 1;
+        int last = _heap[_heapSize];
+        int i = 0;
+        while (2 * i + 1 < _heapSize) {
+            int child = 2 * i + 1;
+            if (child + 1 < _heapSize && before(_heap[child + 1],
+                                                _heap[child])) {
+                child += 1;
+            }
+            if (!before(_heap[child], last)) {
+                break;
+            }
+            _heap[i] = _heap[child];
+            i = child;
+        }
+        _heap[i] = last;
+        return result;
     }
 
+    /** Number of commits in the graph. */
+    private final int _size;
+    /** Position of each commit's first parent, or CommitGraph.NONE. */
+    private final int[] _parent1;
+    /** Position of each commit's second parent, or CommitGraph.NONE. */
+    private final int[] _parent2;
+    /** Generation number of each commit. */
+    private final int[] _generation;
+    /** Paint flags of each commit during a query. */
+    private final byte[] _flags;
+    /** Positions waiting to be visited, as a binary heap. */
+    private final int[] _heap;
+    /** Number of positions in _heap. */
+    private int _heapSize;
+
 }
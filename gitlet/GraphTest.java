@@ -0,0 +1,137 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of Graph, against ancestor sets found by brute force.
+ *  @author Chuhui Han
+ */
+public class GraphTest {
+
+    /** Return the graph of the commits whose parents are PARENTS[K][0]
+     *  and PARENTS[K][1], either of which may be CommitGraph.NONE, for
+     *  the commit at each position K. */
+    private static Graph graph(int[][] parents) throws IOException {
+        File file = File.createTempFile("commit-graph", "");
+        file.delete();
+        try {
+            CommitGraph commits = new CommitGraph(file);
+            for (int k = 0; k < parents.length; k += 1) {
+                commits.add(ObjectId.hash("commit " + k), parents[k][0],
+                            parents[k][1]);
+            }
+            return new Graph(commits);
+        } finally {
+            file.delete();
+        }
+    }
+
+    /** Return, for each commit of PARENTS, as for graph, the set of
+     *  itself and its ancestors. */
+    private static BitSet[] ancestors(int[][] parents) {
+        BitSet[] result = new BitSet[parents.length];
+        for (int k = 0; k < parents.length; k += 1) {
+            result[k] = new BitSet();
+            result[k].set(k);
+            for (int parent : parents[k]) {
+                if (parent != CommitGraph.NONE) {
+                    result[k].or(result[parent]);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Check every query on the history PARENTS, as for graph. */
+    private static void check(int[][] parents) throws IOException {
+        Graph graph = graph(parents);
+        BitSet[] ancestors = ancestors(parents);
+        for (int a = 0; a < parents.length; a += 1) {
+            for (int b = 0; b < parents.length; b += 1) {
+                assertEquals(a + " " + b, ancestors[b].get(a),
+                             graph.isAncestor(a, b));
+                BitSet common = (BitSet) ancestors[a].clone();
+                common.and(ancestors[b]);
+                int base = graph.mergeBase(a, b);
+                if (common.isEmpty()) {
+                    assertEquals(CommitGraph.NONE, base);
+                    continue;
+                }
+                assertTrue(a + " " + b, base != CommitGraph.NONE
+                           && common.get(base));
+                for (int c = common.nextSetBit(0); c >= 0;
+                     c = common.nextSetBit(c + 1)) {
+                    assertFalse(a + " " + b + " " + c,
+                                c != base && ancestors[c].get(base));
+                }
+            }
+        }
+    }
+
+    /** Check a criss-cross history, where two merges each join the same
+     *  two branches, so their tips have two best common ancestors.
+     *
+     *      0 - 1 - 3 - 5
+     *        \   X
+     *          2 - 4 - 6
+     */
+    @Test
+    public void crissCross() throws IOException {
+        int none = CommitGraph.NONE;
+        int[][] parents = {
+            { none, none }, { 0, none }, { 0, none }, { 1, 2 }, { 2, 1 },
+            { 3, none }, { 4, none },
+        };
+        Graph graph = graph(parents);
+        int base = graph.mergeBase(5, 6);
+        assertTrue(base == 1 || base == 2);
+        base = graph.mergeBase(6, 5);
+        assertTrue(base == 1 || base == 2);
+        assertTrue(graph.isAncestor(1, 6));
+        assertTrue(graph.isAncestor(2, 5));
+        assertFalse(graph.isAncestor(3, 6));
+        assertFalse(graph.isAncestor(4, 5));
+        assertEquals(3, graph.mergeBase(3, 5));
+        check(parents);
+    }
+
+    /** Check histories with no common ancestor between some commits. */
+    @Test
+    public void separateRoots() throws IOException {
+        int none = CommitGraph.NONE;
+        int[][] parents = {
+            { none, none }, { none, none }, { 0, none }, { 1, none },
+            { 2, 3 }, { 2, none },
+        };
+        Graph graph = graph(parents);
+        assertEquals(CommitGraph.NONE, graph.mergeBase(3, 5));
+        assertEquals(2, graph.mergeBase(4, 5));
+        check(parents);
+    }
+
+    /** Check random histories with many merges. */
+    @Test
+    public void randomHistories() throws IOException {
+        Random rand = new Random(61);
+        for (int trial = 0; trial < 20; trial += 1) {
+            int[][] parents = new int[40][2];
+            for (int k = 0; k < parents.length; k += 1) {
+                parents[k][0] = k == 0 || rand.nextInt(12) == 0
+                    ? CommitGraph.NONE : rand.nextInt(k);
+                parents[k][1] = parents[k][0] == CommitGraph.NONE
+                    || rand.nextInt(3) > 0 ? CommitGraph.NONE
+                    : rand.nextInt(k);
+                if (parents[k][1] == parents[k][0]) {
+                    parents[k][1] = CommitGraph.NONE;
+                }
+            }
+            check(parents);
+        }
+    }
+
+}
@@ -0,0 +1,177 @@
+package gitlet;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/** Hashes working files in parallel on a pool of at most THREADS worker
+ *  threads, each streaming contents through its own reused buffer (see
+ *  Blob).  A file's sha1 is remembered with the metadata it had when
+ *  hashed, so every command asking about the same unchanged file within
+ *  one run shares a single read of it.
+ *  @author Chuhui Han
+ */
+class Hasher {
+
+    /** Most threads that hash at once. */
+    static final int THREADS =
+        Math.max(1, Math.min(8, Runtime.getRuntime().availableProcessors()));
+    /** Number of files below which a task hashes its files itself rather
+     *  than splitting them. */
+    static final int SPLIT_BELOW = 64;
+    /** Total size in bytes above which a task splits its files even if
+     *  there are few of them, so that a handful of large files are hashed
+     *  in parallel. */
+    static final long SPLIT_BYTES = 1 << 20;
+
+    /** Return the sha1 of the current contents of FILE. */
+    ObjectId hash(File file) {
+        Index.Entry before = Index.stat(file.toPath());
+        Index.Entry known = _known.get(file.getPath());
+        if (known != null && known.sameFile(before)) {
+            return known.getSha1();
+        }
+        ObjectId result = new Blob(file).getSha1();
+        if (before != null) {
+            _known.put(file.getPath(), new Index.Entry(result, before));
+        }
+        return result;
+    }
+
+    /** Return the sha1s of the working files in DIR of each of NAMES,
+     *  hashed in parallel.  A name whose file does not exist is mapped to
+     *  null, and if INDEX is not null, names it shows to be unchanged are
+     *  not hashed and left out. */
+    HashMap<String, ObjectId> hash(File dir, Collection<String> names,
+                                   Index index) {
+        return scan(dir, names, index, null);
+    }
+
+    /** As for hash(DIR, NAMES, INDEX), but also store each file hashed as
+     *  a blob in STORE, in the same read of it. */
+    HashMap<String, ObjectId> store(File dir, Collection<String> names,
+                                    Index index, ObjectStore store) {
+        return scan(dir, names, index, store);
+    }
+
+    /** Return the sha1s of the working files in DIR of each of NAMES as
+     *  for hash(DIR, NAMES, INDEX), storing them as blobs in STORE unless
+     *  it is null. */
+    private HashMap<String, ObjectId> scan(File dir,
+                                           Collection<String> names,
+                                           Index index, ObjectStore store) {
+        String[] paths = names.toArray(new String[0]);
+        ObjectId[] ids = new ObjectId[paths.length];
+        long[] ends = new long[paths.length + 1];
+        for (int k = 0; k < paths.length; k += 1) {
+            ends[k + 1] = ends[k] + new File(dir, paths[k]).length();
+        }
+        Scan scan = new Scan(dir, index, store, paths, ids, ends, 0,
+                             paths.length);
+        if (!scan.splits()) {
+            scan.compute();
+        } else {
+            pool().invoke(scan);
+        }
+        HashMap<String, ObjectId> result = new HashMap<>();
+        for (int k = 0; k < paths.length; k += 1) {
+            if (ids[k] == null) {
+                continue;
+            }
+            result.put(paths[k], ids[k] == MISSING ? null : ids[k]);
+        }
+        return result;
+    }
+
+    /** Return the shared pool of hashing threads, starting it if need
+     *  be. */
+    static synchronized ForkJoinPool pool() {
+        if (_pool == null) {
+            _pool = new ForkJoinPool(THREADS);
+        }
+        return _pool;
+    }
+
+    /** Stands in a scan's results for a missing file. */
+    private static final ObjectId MISSING = ObjectId.ZERO;
+
+    /** A task hashing the working files of some names. */
+    private class Scan extends RecursiveAction {
+
+        /** Tasks are never serialized; this only fixes the UID. */
+        private static final long serialVersionUID = 1L;
+
+        /** A task for PATHS[LO .. HI - 1], whose files are in DIR and
+         *  entries, if any, in INDEX, storing the sha1 of each file not
+         *  known to be unchanged, or MISSING, in the same place in IDS,
+         *  and storing their blobs in STORE if it is not null.  ENDS[K]
+         *  is the total size of the files of PATHS[0 .. K - 1]. */
+        Scan(File dir, Index index, ObjectStore store, String[] paths,
+             ObjectId[] ids, long[] ends, int lo, int hi) {
+            _dir = dir;
+            _index = index;
+            _store = store;
+            _paths = paths;
+            _ids = ids;
+            _ends = ends;
+            _lo = lo;
+            _hi = hi;
+        }
+
+        /** Return true iff this task has too many files, or too many
+         *  bytes in more than one file, to hash them itself. */
+        boolean splits() {
+            return _hi - _lo > SPLIT_BELOW
+                || (_hi - _lo > 1 && _ends[_hi] - _ends[_lo] > SPLIT_BYTES);
+        }
+
+        @Override
+        protected void compute() {
+            if (splits()) {
+                int mid = (_lo + _hi) >>> 1;
+                invokeAll(new Scan(_dir, _index, _store, _paths, _ids,
+                                   _ends, _lo, mid),
+                          new Scan(_dir, _index, _store, _paths, _ids,
+                                   _ends, mid, _hi));
+                return;
+            }
+            for (int k = _lo; k < _hi; k += 1) {
+                File file = new File(_dir, _paths[k]);
+                if (!file.isFile()) {
+                    _ids[k] = MISSING;
+                } else if (_index == null
+                           || _index.unchanged(_paths[k], file) == null) {
+                    _ids[k] = _store == null ? hash(file)
+                        : _store.putBlob(file).getSha1();
+                }
+            }
+        }
+
+        /** The directory of the files. */
+        private final File _dir;
+        /** The index, which is only read, or null. */
+        private final Index _index;
+        /** The store to put blobs in, or null. */
+        private final ObjectStore _store;
+        /** The names of all the scan's files. */
+        private final String[] _paths;
+        /** The results of all the scan's files. */
+        private final ObjectId[] _ids;
+        /** The running total sizes of all the scan's files. */
+        private final long[] _ends;
+        /** The first of this task's names. */
+        private final int _lo;
+        /** Just past the last of this task's names. */
+        private final int _hi;
+    }
+
+    /** The pool of hashing threads, once started. */
+    private static ForkJoinPool _pool;
+
+    /** Files already hashed, by path, with their metadata then. */
+    private final ConcurrentHashMap<String, Index.Entry> _known =
+        new ConcurrentHashMap<>();
+}
@@ -0,0 +1,249 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/** The index: the files the next commit will track, each with the sha1 of
+ *  its staged blob and the size, modification time and inode its working
+ *  file had when that blob was hashed.  A working file whose metadata
+ *  still match its entry is taken to be unchanged without reading it.
+ *  Files staged for addition are entries that differ from the head
+ *  commit; files staged for removal are head files with no entry.  The
+ *  index is kept in one binary file,
+ *
+ *      MAGIC, VERSION, entry count         three ints
+ *      for each entry, in path order:
+ *          path                            modified UTF-8
+ *          sha1                            20 bytes
+ *          size, mtime (ns), inode         three longs
+ *
+ *  An entry whose mtime is not older than the index file itself may have
+ *  changed again within the same clock tick, so it is never trusted.
+ *  @author Chuhui Han
+ */
+class Index {
+
+    /** Marks the start of an index file. */
+    static final int MAGIC = 0x47494e58;
+    /** The index format version. */
+    static final int VERSION = 1;
+
+    /** The index stored in FILE, or an empty one if FILE does not exist. */
+    Index(File file) {
+        _file = file;
+        if (!file.isFile()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(
+                 new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IllegalArgumentException("bad index");
+            }
+            byte[] id = new byte[PackIndex.ID_BYTES];
+            for (int n = in.readInt(); n > 0; n -= 1) {
+                String path = in.readUTF();
+                in.readFully(id);
+                _entries.put(path,
+                             new Entry(ObjectId.fromBytes(id, 0),
+                                       in.readLong(), in.readLong(),
+                                       in.readLong()));
+            }
+            _writtenAt = nanos(Files.getLastModifiedTime(file.toPath()));
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return the sha1 staged for PATH, or null if it has no entry. */
+    ObjectId get(String path) {
+        Entry entry = _entries.get(path);
+        return entry == null ? null : entry.id;
+    }
+
+    /** Return true iff PATH has an entry. */
+    boolean contains(String path) {
+        return _entries.containsKey(path);
+    }
+
+    /** Return every path with an entry, mapped to its staged sha1. */
+    TreeMap<String, ObjectId> tracked() {
+        TreeMap<String, ObjectId> result = new TreeMap<>();
+        for (Map.Entry<String, Entry> entry : _entries.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().id);
+        }
+        return result;
+    }
+
+    /** Stage ID for PATH, whose working file FILE has just been hashed to
+     *  ID, recording FILE's metadata. */
+    void put(String path, ObjectId id, File file) {
+        _entries.put(path, new Entry(id, file.toPath()));
+        _changed = true;
+    }
+
+    /** Stage ID for PATH without recording metadata, for a working file
+     *  that may not hold ID, so that it is always rehashed. */
+    void putUnverified(String path, ObjectId id) {
+        _entries.put(path, new Entry(id, -1, -1, -1));
+        _changed = true;
+    }
+
+    /** Remove the entry of PATH, if any. */
+    void remove(String path) {
+        if (_entries.remove(path) != null) {
+            _changed = true;
+        }
+    }
+
+    /** Return the staged sha1 of PATH if its working file FILE has not
+     *  changed since it was hashed, judging by its metadata alone, or
+     *  null if that cannot be told without hashing FILE. */
+    ObjectId unchanged(String path, File file) {
+        Entry entry = _entries.get(path);
+        if (entry == null || entry.mtime >= _writtenAt) {
+            return null;
+        }
+        return entry.sameFile(stat(file.toPath())) ? entry.id : null;
+    }
+
+    /** Write this index back to its file if it has changed, replacing
+     *  the old file in one step. */
+    void write() {
+        if (!_changed) {
+            return;
+        }
+        File temp = new File(_file.getPath() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(_entries.size());
+                ByteBuffer id = ByteBuffer.allocate(PackIndex.ID_BYTES);
+                for (Map.Entry<String, Entry> entry : _entries.entrySet()) {
+                    Entry e = entry.getValue();
+                    out.writeUTF(entry.getKey());
+                    id.clear();
+                    e.id.write(id);
+                    out.write(id.array());
+                    out.writeLong(e.size);
+                    out.writeLong(e.mtime);
+                    out.writeLong(e.inode);
+                }
+            }
+            Files.move(temp.toPath(), _file.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        _changed = false;
+    }
+
+    /** Return the metadata of the file at PATH as an entry with no sha1,
+     *  or null if it cannot be read.  The inode is 0 where the file
+     *  system does not report one. */
+    static Entry stat(Path path) {
+        try {
+            Map<String, Object> attrs =
+                Files.readAttributes(path, "unix:size,lastModifiedTime,ino",
+                                     LinkOption.NOFOLLOW_LINKS);
+            return new Entry(null, (Long) attrs.get("size"),
+                             nanos((FileTime) attrs.get("lastModifiedTime")),
+                             (Long) attrs.get("ino"));
+        } catch (UnsupportedOperationException | IllegalArgumentException
+                 excp) {
+            try {
+                BasicFileAttributes attrs =
+                    Files.readAttributes(path, BasicFileAttributes.class,
+                                         LinkOption.NOFOLLOW_LINKS);
+                return new Entry(null, attrs.size(),
+                                 nanos(attrs.lastModifiedTime()), 0);
+            } catch (IOException excp2) {
+                return null;
+            }
+        } catch (IOException excp) {
+            return null;
+        }
+    }
+
+    /** Return TIME in nanoseconds. */
+    private static long nanos(FileTime time) {
+        return time.to(TimeUnit.NANOSECONDS);
+    }
+
+    /** One file's staged sha1 and working-file metadata. */
+    static class Entry {
+        /** An entry for ID whose working file is at PATH. */
+        Entry(ObjectId id, Path path) {
+            Entry now = stat(path);
+            if (now == null) {
+                throw new IllegalArgumentException("cannot read " + path);
+            }
+            this.id = id;
+            this.size = now.size;
+            this.mtime = now.mtime;
+            this.inode = now.inode;
+        }
+
+        /** An entry for ID with the working-file metadata of STAT. */
+        Entry(ObjectId id, Entry stat) {
+            this(id, stat.size, stat.mtime, stat.inode);
+        }
+
+        /** An entry for ID with working-file metadata SIZE, MTIME and
+         *  INODE. */
+        Entry(ObjectId id, long size, long mtime, long inode) {
+            this.id = id;
+            this.size = size;
+            this.mtime = mtime;
+            this.inode = inode;
+        }
+
+        /** Return the sha1 of this entry's contents. */
+        ObjectId getSha1() {
+            return id;
+        }
+
+        /** Return true iff OTHER is not null and records the same size,
+         *  mtime and inode as this entry. */
+        boolean sameFile(Entry other) {
+            return other != null && other.size == size
+                && other.mtime == mtime && other.inode == inode;
+        }
+
+        /** The staged sha1. */
+        private final ObjectId id;
+        /** The working file's size in bytes. */
+        private final long size;
+        /** The working file's modification time in nanoseconds. */
+        private final long mtime;
+        /** The working file's inode, or 0 if unknown. */
+        private final long inode;
+    }
+
+    /** The index file. */
+    private final File _file;
+    /** The entries, by path. */
+    private final TreeMap<String, Entry> _entries = new TreeMap<>();
+    /** Modification time of the index file when read, in nanoseconds. */
+    private long _writtenAt = Long.MIN_VALUE;
+    /** True iff the entries differ from the file. */
+    private boolean _changed;
+}
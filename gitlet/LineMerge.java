@@ -0,0 +1,131 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** A three-way merge of the lines of a file, as done by diff3.  The
+ *  versions on both sides are diffed against their common base, and the
+ *  base lines kept by both mark stable regions.  Between them, a region
+ *  changed on only one side takes that side's lines, one changed the same
+ *  way on both sides takes those lines, and only one changed differently
+ *  on the two sides becomes a conflict, with the two versions of just
+ *  that region between conflict markers.  Lines are handled as
+ *  ISO-8859-1, so any contents survive byte for byte.
+ *  @author Chuhui Han
+ */
+class LineMerge {
+
+    /** Merge OURS and THEIRS, two versions of the file whose common
+     *  ancestor is BASE, writing the result to OUT as it is found. */
+    LineMerge(byte[] base, byte[] ours, byte[] theirs, OutputStream out)
+        throws IOException {
+        _out = out;
+        _base = Delta.lines(base);
+        _ours = Delta.lines(ours);
+        _theirs = Delta.lines(theirs);
+        int[] inOurs = matches(_base, _ours);
+        int[] inTheirs = matches(_base, _theirs);
+
+        int o = 0, a = 0, b = 0;
+        while (o < _base.size() || a < _ours.size() || b < _theirs.size()) {
+            int k = 0;
+            while (o + k < _base.size() && inOurs[o + k] == a + k
+                   && inTheirs[o + k] == b + k) {
+                k += 1;
+            }
+            if (k > 0) {
+                append(_base.subList(o, o + k));
+                o += k;
+                a += k;
+                b += k;
+                continue;
+            }
+            int next = o;
+            while (next < _base.size()
+                   && (inOurs[next] < 0 || inTheirs[next] < 0)) {
+                next += 1;
+            }
+            int a1 = next == _base.size() ? _ours.size() : inOurs[next];
+            int b1 = next == _base.size() ? _theirs.size() : inTheirs[next];
+            resolve(_base.subList(o, next), _ours.subList(a, a1),
+                    _theirs.subList(b, b1));
+            o = next;
+            a = a1;
+            b = b1;
+        }
+    }
+
+    /** Return true iff some region was changed differently on both
+     *  sides. */
+    boolean conflicted() {
+        return _conflicts > 0;
+    }
+
+    /** Add the merge of the region BASE, which is OURS on one side and
+     *  THEIRS on the other, to the output. */
+    private void resolve(List<String> base, List<String> ours,
+                         List<String> theirs) throws IOException {
+        if (ours.equals(base) || ours.equals(theirs)) {
+            append(theirs);
+        } else if (theirs.equals(base)) {
+            append(ours);
+        } else {
+            _conflicts += 1;
+            append(Arrays.asList("<<<<<<< HEAD\n"));
+            append(ours);
+            endLine(ours);
+            append(Arrays.asList("=======\n"));
+            append(theirs);
+            endLine(theirs);
+            append(Arrays.asList(">>>>>>>\n"));
+        }
+    }
+
+    /** Add LINES to the output. */
+    private void append(List<String> lines) throws IOException {
+        for (String line : lines) {
+            byte[] bytes = line.getBytes(StandardCharsets.ISO_8859_1);
+            _out.write(bytes, 0, bytes.length);
+        }
+    }
+
+    /** Add a newline to the output if LINES ends without one, so that a
+     *  conflict marker after it starts a line. */
+    private void endLine(List<String> lines) throws IOException {
+        if (!lines.isEmpty() && !lines.get(lines.size() - 1).endsWith("\n")) {
+            _out.write('\n');
+        }
+    }
+
+    /** Return, for each line of BASE, the position of the line of OTHER
+     *  it is matched with by a line diff, or -1 if none. */
+    private static int[] matches(ArrayList<String> base,
+                                 ArrayList<String> other) {
+        int[] result = new int[base.size()];
+        Arrays.fill(result, -1);
+        Diff diff = new Diff();
+        diff.setSequences(base, other);
+        int[] common = diff.commonSubsequence();
+        for (int k = 0; k < common.length; k += 3) {
+            for (int i = 0; i < common[k + 2]; i += 1) {
+                result[common[k] + i] = common[k + 1] + i;
+            }
+        }
+        return result;
+    }
+
+    /** The lines of the common ancestor. */
+    private final ArrayList<String> _base;
+    /** The lines of the current branch's version. */
+    private final ArrayList<String> _ours;
+    /** The lines of the given branch's version. */
+    private final ArrayList<String> _theirs;
+    /** Where the merged contents are written. */
+    private final OutputStream _out;
+    /** Number of conflicting regions so far. */
+    private int _conflicts;
+}
@@ -0,0 +1,84 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of LineMerge.
+ *  @author Chuhui Han
+ */
+public class LineMergeTest {
+
+    /** The result of the last merge. */
+    private LineMerge _merge;
+
+    /** Return the merge of OURS and THEIRS, whose common ancestor is
+     *  BASE, leaving the merge in _merge. */
+    private String merge(String base, String ours, String theirs)
+        throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        _merge = new LineMerge(bytes(base), bytes(ours), bytes(theirs), out);
+        return new String(out.toByteArray(), StandardCharsets.ISO_8859_1);
+    }
+
+    /** Return the bytes of TEXT. */
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /** Check that changes to different lines are both kept. */
+    @Test
+    public void cleanMerge() throws IOException {
+        assertEquals("A\nb\nc\nd\nE\n",
+                     merge("a\nb\nc\nd\ne\n", "A\nb\nc\nd\ne\n",
+                           "a\nb\nc\nd\nE\n"));
+        assertFalse(_merge.conflicted());
+        assertEquals("a\nx\nb\nc\ny\n",
+                     merge("a\nb\nc\n", "a\nx\nb\nc\n", "a\nb\nc\ny\n"));
+        assertFalse(_merge.conflicted());
+    }
+
+    /** Check that a change made the same way on both sides is kept
+     *  once. */
+    @Test
+    public void identicalChanges() throws IOException {
+        assertEquals("a\nB\nc\n",
+                     merge("a\nb\nc\n", "a\nB\nc\n", "a\nB\nc\n"));
+        assertFalse(_merge.conflicted());
+    }
+
+    /** Check that changes to the same lines conflict, with just that
+     *  region between markers. */
+    @Test
+    public void overlappingConflict() throws IOException {
+        assertEquals("a\n<<<<<<< HEAD\nours\n=======\ntheirs\n>>>>>>>\nc\n",
+                     merge("a\nb\nc\n", "a\nours\nc\n", "a\ntheirs\nc\n"));
+        assertTrue(_merge.conflicted());
+    }
+
+    /** Check that a side without a final newline keeps the markers at
+     *  the starts of lines, and merges cleanly when only it changed. */
+    @Test
+    public void missingFinalNewline() throws IOException {
+        assertEquals("a\n<<<<<<< HEAD\nb1\n=======\nb2\n>>>>>>>\n",
+                     merge("a\nb\n", "a\nb1", "a\nb2\n"));
+        assertTrue(_merge.conflicted());
+        assertEquals("A\nb\nc",
+                     merge("a\nb\nc\n", "A\nb\nc\n", "a\nb\nc"));
+        assertFalse(_merge.conflicted());
+    }
+
+    /** Check a file deleted on one side, which is empty there. */
+    @Test
+    public void deletedOnOneSide() throws IOException {
+        assertEquals("", merge("a\nb\n", "a\nb\n", ""));
+        assertFalse(_merge.conflicted());
+        assertEquals("<<<<<<< HEAD\na\nB\n=======\n>>>>>>>\n",
+                     merge("a\nb\n", "a\nB\n", ""));
+        assertTrue(_merge.conflicted());
+    }
+
+}
@@ -2,6 +2,7 @@ package gitlet;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 
 /** Driver class for Gitlet, the tiny stupid version-control system.
  *  @author Chuhui Han
@@ -15,6 +16,15 @@ public class Main {
     /** Usage: java gitlet.Main ARGS, where ARGS contains
      *  <COMMAND> <OPERAND> .... */
     public static void main(String... args) throws IOException {
+        try {
+            run(args);
+        } catch (GitletException excp) {
+            System.out.println(excp.getMessage());
+        }
+    }
+
+    /** Execute the command in ARGS against the repository. */
+    private static void run(String... args) throws IOException {
         loadRepo();
         if (args.length == 0) {
             System.out.println("Please enter a command.");
@@ -32,7 +42,8 @@ public class Main {
         } else {
             if (args[0].equals("add")) {
                 if (args.length >= 2) {
-                    repository.add(args[1]);
+                    repository.add(Arrays.copyOfRange(args, 1,
+                            args.length));
                 } else {
                     System.out.println("Please enter a file name");
                 }
@@ -41,11 +52,11 @@ public class Main {
                     repository.commitStaged(args[1], null);
                 }
             } else if (args[0].equals("log")) {
-                repository.log();
+                repository.log(Arrays.copyOfRange(args, 1, args.length));
             } else if (args[0].equals("global-log")) {
                 repository.globalLog();
             } else if (args[0].equals("find")) {
-                repository.find(args[1]);
+                repository.find(Arrays.copyOfRange(args, 1, args.length));
             } else if (args[0].equals("checkout")) {
                 if (args[1].equals("--")) {
                     repository.checkout(args[2]);
@@ -68,6 +79,21 @@ public class Main {
                 repository.removeBranch(args[1]);
             } else if (args[0].equals("merge")) {
                 repository.merge(args[1]);
+            } else if (args[0].equals("diff")) {
+                if (args.length <= 3) {
+                    repository.diff(Arrays.copyOfRange(args, 1,
+                            args.length));
+                } else {
+                    System.out.println("Incorrect operands.");
+                }
+            } else if (args[0].equals("repack")) {
+                repository.repack();
+            } else if (args[0].equals("compression")) {
+                if (args.length == 2) {
+                    repository.setCompression(args[1]);
+                } else {
+                    System.out.println("Incorrect operands.");
+                }
             } else {
                 System.out.println("No command with that name exists.");
             }
@@ -0,0 +1,222 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/** Writes blobs out as working files, many at once.  A bounded pool of
+ *  writers each streams one blob at a time from the store into a
+ *  temporary file of its own, so no more than THREADS blobs are being
+ *  copied at once and a loose blob is never held whole in memory.  The
+ *  temporary files go in a fresh directory under the repository's
+ *  scratch directory, which is on the same file system as the working
+ *  files, so nothing is written among the user's files until the end.
+ *  Only once every file has been written are they all renamed into
+ *  place.  Each file they replace or that stands in their way, and each
+ *  file to be deleted, is first kept aside in the same directory until
+ *  the last rename succeeds, so a failed read or write leaves the
+ *  working directory as it was.  No rename replaces a file.
+ *  @author Chuhui Han
+ */
+class Materializer {
+
+    /** Most threads writing files at once. */
+    static final int THREADS = Hasher.THREADS;
+
+    /** A materializer reading blobs from STORE and keeping its temporary
+     *  files under the directory SCRATCH. */
+    Materializer(ObjectStore store, File scratch) {
+        _store = store;
+        _scratch = scratch;
+    }
+
+    /** For each entry of FILES, a path and a blob sha1, write that blob to
+     *  the file at that path in DIR, creating or replacing it, or delete
+     *  that file if the sha1 is null.  Files at the directories above a
+     *  path written, and files in a directory at that path, are deleted
+     *  to make way for it.  Throws a GitletException, having changed no
+     *  file, if any blob cannot be read or any file written. */
+    void write(File dir, Map<String, ObjectId> files) {
+        File work = workDir();
+        try {
+            install(dir, work, files, writeAll(work, files));
+        } finally {
+            clean(work);
+        }
+    }
+
+    /** Return a new, empty directory under the scratch directory. */
+    private File workDir() {
+        _scratch.mkdirs();
+        try {
+            return Files.createTempDirectory(_scratch.toPath(), "checkout")
+                .toFile();
+        } catch (IOException excp) {
+            throw Utils.error(excp.getMessage());
+        }
+    }
+
+    /** Return, keyed by path, a temporary file in WORK holding the blob
+     *  of each entry of FILES with a sha1, written by the pool of
+     *  writers. */
+    private LinkedHashMap<String, File> writeAll(File work,
+                                                 Map<String, ObjectId> files) {
+        LinkedHashMap<String, Future<File>> pending = new LinkedHashMap<>();
+        ExecutorService writers = Executors.newFixedThreadPool(THREADS);
+        LinkedHashMap<String, File> written = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<String, ObjectId> entry : files.entrySet()) {
+                if (entry.getValue() == null) {
+                    continue;
+                }
+                File temp = new File(work, pending.size() + ".new");
+                ObjectId id = entry.getValue();
+                pending.put(entry.getKey(), writers.submit(() -> {
+                    _store.copyBlob(id, temp);
+                    return temp;
+                }));
+            }
+            for (Map.Entry<String, Future<File>> entry : pending.entrySet()) {
+                written.put(entry.getKey(), entry.getValue().get());
+            }
+        } catch (InterruptedException | ExecutionException
+                 | RuntimeException excp) {
+            writers.shutdownNow();
+            drain(pending.values());
+            throw Utils.error(cause(excp));
+        } finally {
+            writers.shutdown();
+        }
+        return written;
+    }
+
+    /** Delete the file at each path of FILES with a null sha1, then
+     *  rename each temporary file of WRITTEN, keyed by its path in DIR,
+     *  to that path, first clearing its way.  Every file deleted,
+     *  replaced or in the way is moved aside into WORK.  If any rename
+     *  fails, each step taken is undone, last first. */
+    private static void install(File dir, File work,
+                                Map<String, ObjectId> files,
+                                LinkedHashMap<String, File> written) {
+        ArrayList<String> paths = new ArrayList<>();
+        ArrayList<File> kept = new ArrayList<>();
+        try {
+            for (Map.Entry<String, ObjectId> entry : files.entrySet()) {
+                if (entry.getValue() == null) {
+                    keep(dir, entry.getKey(), work, paths, kept);
+                }
+            }
+            for (Map.Entry<String, File> entry : written.entrySet()) {
+                String path = entry.getKey();
+                File dest = new File(dir, path);
+                if (dest.isDirectory()) {
+                    for (String inside : WorkTree.files(dir, dest)) {
+                        keep(dir, inside, work, paths, kept);
+                    }
+                }
+                for (int slash = path.indexOf('/'); slash > 0;
+                     slash = path.indexOf('/', slash + 1)) {
+                    keep(dir, path.substring(0, slash), work, paths, kept);
+                }
+                keep(dir, path, work, paths, kept);
+                dest.getParentFile().mkdirs();
+                move(entry.getValue(), dest);
+                paths.add(path);
+                kept.add(null);
+            }
+        } catch (IOException | RuntimeException excp) {
+            for (int k = paths.size() - 1; k >= 0; k -= 1) {
+                File dest = new File(dir, paths.get(k));
+                try {
+                    if (kept.get(k) == null) {
+                        Files.delete(dest.toPath());
+                        prune(dir, dest);
+                    } else {
+                        dest.getParentFile().mkdirs();
+                        move(kept.get(k), dest);
+                    }
+                } catch (IOException excp2) {
+                    continue;
+                }
+            }
+            throw Utils.error(excp.getMessage());
+        }
+    }
+
+    /** If there is a file at PATH in DIR, move it into WORK and remove
+     *  any directories above it left empty, adding PATH to PATHS and
+     *  where it went to KEPT. */
+    private static void keep(File dir, String path, File work,
+                             ArrayList<String> paths, ArrayList<File> kept)
+        throws IOException {
+        File file = new File(dir, path);
+        if (file.isFile()) {
+            File old = new File(work, kept.size() + ".old");
+            move(file, old);
+            paths.add(path);
+            kept.add(old);
+            prune(dir, file);
+        }
+    }
+
+    /** Remove the directories above FILE, up to but not including DIR,
+     *  that are empty. */
+    private static void prune(File dir, File file) {
+        for (File above = file.getParentFile();
+             above != null && !above.equals(dir) && above.delete();
+             above = above.getParentFile()) {
+            continue;
+        }
+    }
+
+    /** Rename FROM to TO, failing rather than replacing a file at TO. */
+    private static void move(File from, File to) throws IOException {
+        Files.move(from.toPath(), to.toPath());
+    }
+
+    /** Wait for the writers of PENDING to stop, so that none is still
+     *  writing into the work directory when it is removed. */
+    private static void drain(Iterable<Future<File>> pending) {
+        for (Future<File> future : pending) {
+            try {
+                future.get(1, TimeUnit.MINUTES);
+            } catch (Exception excp) {
+                continue;
+            }
+        }
+    }
+
+    /** Delete the work directory WORK and whatever is left in it. */
+    private static void clean(File work) {
+        File[] left = work.listFiles();
+        if (left != null) {
+            for (File file : left) {
+                file.delete();
+            }
+        }
+        work.delete();
+    }
+
+    /** Return the message of the failure underlying EXCP. */
+    private static String cause(Exception excp) {
+        Throwable result = excp;
+        if (excp instanceof ExecutionException && excp.getCause() != null) {
+            result = excp.getCause();
+        }
+        return result.getMessage();
+    }
+
+    /** The store blobs are read from. */
+    private final ObjectStore _store;
+
+    /** The directory holding work directories while files are written. */
+    private final File _scratch;
+}
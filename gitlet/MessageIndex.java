@@ -0,0 +1,407 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/** An inverted index of commit messages, for narrowing a search to the
+ *  few commits whose messages can match it before any commit is read.
+ *  Each message is indexed under every trigram (three consecutive chars)
+ *  of its lowercased text, and each trigram lists the commit-graph
+ *  positions of the messages holding it, in increasing order.  A message
+ *  can only contain a string if it holds all of the string's trigrams,
+ *  so intersecting their lists gives the candidates, which the caller
+ *  then checks against the real messages.
+ *
+ *  As with CommitIndex, most of the index is in a sorted file, read
+ *  through a memory map,
+ *
+ *      MAGIC, VERSION                      ints
+ *      commits indexed, trigrams           ints
+ *      for each trigram, in order:
+ *          the trigram                     three chars
+ *          offset, number of positions     ints
+ *      positions                           ints
+ *
+ *  whose directory is binary-searched in place, and messages of recent
+ *  commits are appended to a short journal,
+ *  merged into the sorted file once it holds COMPACT_AT messages.
+ *  Commits are indexed in position order, so the index covers exactly
+ *  the first size() positions.
+ *  @author Chuhui Han
+ */
+class MessageIndex {
+
+    /** Journal length at which it is merged into the sorted file. */
+    static final int COMPACT_AT = 1024;
+    /** Marks the start of a sorted message-index file. */
+    static final int MAGIC = 0x474d5349;
+    /** The message-index format version. */
+    static final int VERSION = 1;
+    /** Length of the strings indexed. */
+    static final int GRAM = 3;
+    /** Bytes before the directory. */
+    static final int HEADER = 16;
+    /** Bytes in one directory entry. */
+    static final int ENTRY = 2 * GRAM + 8;
+
+    /** An index whose sorted part is in SORTED and recent messages in
+     *  JOURNAL.  Neither need exist yet. */
+    MessageIndex(File sorted, File journal) {
+        _sorted = sorted;
+        _journal = journal;
+    }
+
+    /** Return the number of commits indexed, which are those at positions
+     *  0 .. size() - 1. */
+    int size() {
+        journal();
+        return covered() + _journalSize;
+    }
+
+    /** Record MESSAGE as that of the commit at POSITION, which must be
+     *  size(). */
+    void add(int position, String message) {
+        if (position != size()) {
+            throw new IllegalArgumentException("commit indexed out of order");
+        }
+        byte[] text = message.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(4 + text.length);
+        record.putInt(text.length).put(text);
+        try {
+            Files.write(_journal.toPath(), record.array(),
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.APPEND);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        journal(position, message);
+        if (_journalSize >= COMPACT_AT) {
+            compact();
+        }
+    }
+
+    /** Return the positions, in increasing order, of the commits whose
+     *  messages may contain every one of LITERALS, ignoring case, or null
+     *  if none of LITERALS is long enough to narrow the search. */
+    int[] candidates(Collection<String> literals) {
+        TreeSet<String> grams = new TreeSet<>();
+        for (String literal : literals) {
+            grams.addAll(trigrams(literal));
+        }
+        if (grams.isEmpty()) {
+            return null;
+        }
+        int[] result = null;
+        for (String gram : grams) {
+            int[] positions = positions(gram);
+            result = result == null ? positions : intersect(result, positions);
+            if (result.length == 0) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    /** The letters after a backslash in a regular expression that stand
+     *  for a single char, class or boundary, not for following chars. */
+    static final String SIMPLE_ESCAPES = "dDsSwWbBhHvVtnrfeaAzZG";
+
+    /** Return strings that every match of the regular expression REGEX
+     *  must contain.  Only runs of plain chars outside any group are
+     *  taken, and none at all if REGEX has alternatives, flags or unusual
+     *  escapes, so the result may be empty but is never wrong. */
+    static ArrayList<String> literals(String regex) {
+        ArrayList<String> result = new ArrayList<>();
+        if (regex.contains("|") || regex.contains("(?")) {
+            return result;
+        }
+        StringBuilder run = new StringBuilder();
+        int depth = 0;
+        for (int k = 0; k < regex.length(); k += 1) {
+            char c = regex.charAt(k);
+            if (c == '\\' && k + 1 < regex.length()
+                && !Character.isLetterOrDigit(regex.charAt(k + 1))) {
+                k += 1;
+                c = regex.charAt(k);
+            } else if (c == '\\' && (k + 1 == regex.length()
+                       || SIMPLE_ESCAPES.indexOf(regex.charAt(k + 1)) < 0)) {
+                return new ArrayList<>();
+            } else if (c == '*' || c == '?' || c == '{') {
+                if (run.length() > 0) {
+                    run.setLength(run.length() - 1);
+                }
+                endRun(run, result);
+                if (c == '{') {
+                    k = Math.max(k, regex.indexOf('}', k));
+                }
+                continue;
+            } else if ("\\[]().^$+}".indexOf(c) >= 0) {
+                depth += c == '(' ? 1 : c == ')' ? -1 : 0;
+                endRun(run, result);
+                if (c == '\\' || c == '[') {
+                    k = skipAtom(regex, k);
+                }
+                continue;
+            }
+            if (depth == 0) {
+                run.append(c);
+            }
+        }
+        endRun(run, result);
+        return result;
+    }
+
+    /** Add RUN to RESULT if it is long enough to be indexed, and empty
+     *  it. */
+    private static void endRun(StringBuilder run, ArrayList<String> result) {
+        if (run.length() >= GRAM) {
+            result.add(run.toString());
+        }
+        run.setLength(0);
+    }
+
+    /** Return the index of the last char of the escape or char class
+     *  starting at K in REGEX. */
+    private static int skipAtom(String regex, int k) {
+        if (regex.charAt(k) == '\\') {
+            return k + 1;
+        }
+        int end = k + 1;
+        if (end < regex.length() && regex.charAt(end) == '^') {
+            end += 1;
+        }
+        end += 1;
+        while (end < regex.length() && regex.charAt(end) != ']') {
+            end += regex.charAt(end) == '\\' ? 2 : 1;
+        }
+        return end;
+    }
+
+    /** Return the trigrams of TEXT, lowercased. */
+    static TreeSet<String> trigrams(String text) {
+        String lower = text.toLowerCase();
+        TreeSet<String> result = new TreeSet<>();
+        for (int k = 0; k + GRAM <= lower.length(); k += 1) {
+            result.add(lower.substring(k, k + GRAM));
+        }
+        return result;
+    }
+
+    /** Return the positions of the messages holding GRAM, in increasing
+     *  order. */
+    private int[] positions(String gram) {
+        int[] result = new int[0];
+        int entry = find(gram);
+        if (entry >= 0) {
+            MappedByteBuffer map = map();
+            int offset = HEADER + grams() * ENTRY
+                + map.getInt(entry + 2 * GRAM);
+            result = new int[map.getInt(entry + 2 * GRAM + 4)];
+            for (int k = 0; k < result.length; k += 1) {
+                result[k] = map.getInt(offset + 4 * k);
+            }
+        }
+        ArrayList<Integer> recent = journal().get(gram);
+        if (recent != null) {
+            int count = result.length;
+            result = Arrays.copyOf(result, count + recent.size());
+            for (int position : recent) {
+                result[count] = position;
+                count += 1;
+            }
+        }
+        return result;
+    }
+
+    /** Return the values in both A and B, which are increasing. */
+    private static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i += 1;
+            } else if (a[i] > b[j]) {
+                j += 1;
+            } else {
+                result[n] = a[i];
+                n += 1;
+                i += 1;
+                j += 1;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /** Replace the sorted file by one also holding the journal's
+     *  messages, and empty the journal. */
+    private void compact() {
+        TreeMap<String, int[]> lists = new TreeMap<>();
+        for (int k = 0; k < grams(); k += 1) {
+            String gram = gramAt(HEADER + k * ENTRY);
+            lists.put(gram, positions(gram));
+        }
+        for (String gram : journal().keySet()) {
+            if (!lists.containsKey(gram)) {
+                lists.put(gram, positions(gram));
+            }
+        }
+        File temp = new File(_sorted.getPath() + ".tmp");
+        try {
+            write(temp, size(), lists);
+            Files.move(temp.toPath(), _sorted.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        _journal.delete();
+        _map = null;
+        _recent = null;
+        _journalSize = 0;
+    }
+
+    /** Write a sorted file to FILE indexing the first COVERED commits,
+     *  whose trigrams have the position lists LISTS. */
+    private static void write(File file, int covered,
+                              TreeMap<String, int[]> lists)
+        throws IOException {
+        try (DataOutputStream data = new DataOutputStream(
+                 new BufferedOutputStream(
+                     Files.newOutputStream(file.toPath()), 1 << 16))) {
+            data.writeInt(MAGIC);
+            data.writeInt(VERSION);
+            data.writeInt(covered);
+            data.writeInt(lists.size());
+            int offset = 0;
+            for (Map.Entry<String, int[]> entry : lists.entrySet()) {
+                data.writeChars(entry.getKey());
+                data.writeInt(offset);
+                data.writeInt(entry.getValue().length);
+                offset += 4 * entry.getValue().length;
+            }
+            for (int[] positions : lists.values()) {
+                for (int position : positions) {
+                    data.writeInt(position);
+                }
+            }
+        }
+    }
+
+    /** Return the number of commits the sorted file indexes. */
+    private int covered() {
+        return map() == null ? 0 : map().getInt(8);
+    }
+
+    /** Return the number of trigrams in the sorted file. */
+    private int grams() {
+        return map() == null ? 0 : map().getInt(12);
+    }
+
+    /** Return the offset of the directory entry for GRAM in the sorted
+     *  file, or -1 if it has none. */
+    private int find(String gram) {
+        int lo = 0, hi = grams() - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int entry = HEADER + mid * ENTRY;
+            int c = gramAt(entry).compareTo(gram);
+            if (c == 0) {
+                return entry;
+            } else if (c < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return -1;
+    }
+
+    /** Return the trigram of the directory entry at offset ENTRY. */
+    private String gramAt(int entry) {
+        char[] result = new char[GRAM];
+        for (int k = 0; k < GRAM; k += 1) {
+            result[k] = map().getChar(entry + 2 * k);
+        }
+        return new String(result);
+    }
+
+    /** Return the positions of the journal's messages holding each of
+     *  their trigrams, in increasing order. */
+    private HashMap<String, ArrayList<Integer>> journal() {
+        if (_recent == null) {
+            _recent = new HashMap<>();
+            _journalSize = 0;
+            if (_journal.isFile()) {
+                ByteBuffer records;
+                try {
+                    records = ByteBuffer.wrap(
+                        Files.readAllBytes(_journal.toPath()));
+                } catch (IOException excp) {
+                    throw new IllegalArgumentException(excp.getMessage());
+                }
+                while (records.remaining() >= 4
+                       && records.getInt(records.position())
+                           <= records.remaining() - 4) {
+                    byte[] text = new byte[records.getInt()];
+                    records.get(text);
+                    journal(covered() + _journalSize,
+                            new String(text, StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return _recent;
+    }
+
+    /** Add MESSAGE, that of the commit at POSITION, to the journal's
+     *  trigrams. */
+    private void journal(int position, String message) {
+        for (String gram : trigrams(message)) {
+            journal().computeIfAbsent(gram, k -> new ArrayList<>())
+                .add(position);
+        }
+        _journalSize += 1;
+    }
+
+    /** Return the mapped sorted file, or null if there is none yet. */
+    private MappedByteBuffer map() {
+        if (_map == null && _sorted.isFile()) {
+            try (FileChannel channel = FileChannel.open(_sorted.toPath(),
+                                                    StandardOpenOption.READ)) {
+                _map = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                                   channel.size());
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+            if (_map.getInt(0) != MAGIC || _map.getInt(4) != VERSION) {
+                throw new IllegalArgumentException("bad message index");
+            }
+        }
+        return _map;
+    }
+
+    /** The sorted file. */
+    private final File _sorted;
+    /** The file of recently added messages. */
+    private final File _journal;
+    /** The mapped sorted file, once opened. */
+    private MappedByteBuffer _map;
+    /** The positions of the journal's messages by trigram, once read. */
+    private HashMap<String, ArrayList<Integer>> _recent;
+    /** The number of messages in the journal, once read. */
+    private int _journalSize;
+}
@@ -0,0 +1,131 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of MessageIndex, against a scan of every message.
+ *  @author Chuhui Han
+ */
+public class MessageIndexTest {
+
+    /** Pieces that random messages are made of. */
+    private static final String[] PIECES = {
+        "abc", "abcd", "bcda", "dab", "xyz", "x", "y", "d", ".", "*", "1",
+        "a.bcd*", "ABCD", " ", "q",
+    };
+
+    /** Regular expressions with no alternatives or unusual escapes, and
+     *  the strings literals() should find that their matches contain. */
+    private static final String[][] REGEXES = {
+        { "abcd", "abcd" },
+        { "abcd[xy]bcda", "abcd", "bcda" },
+        { "[^abc]xyz", "xyz" },
+        { "abcd?x", "abc" },
+        { "abcx*dab", "abc", "dab" },
+        { "ab?cdab", "cdab" },
+        { "a\\.bcd\\*", "a.bcd*" },
+        { "\\dabc", "abc" },
+        { "(abcd)xyz", "xyz" },
+        { "^abc.+dab$", "abc", "dab" },
+        { "ab{2}cda", "cda" },
+    };
+
+    /** Regular expressions from which literals() should find nothing. */
+    private static final String[] OPAQUE = {
+        "abc|xyz", "abcd|bcda", "(abcd|xyz)dab", "(?i)abcd", "abc\\Qx",
+        "ab", "a.b.c", "[abcd]*",
+    };
+
+    /** Check the strings found in regular expressions. */
+    @Test
+    public void literals() {
+        for (String[] test : REGEXES) {
+            assertEquals(test[0],
+                         Arrays.asList(test).subList(1, test.length),
+                         MessageIndex.literals(test[0]));
+        }
+        for (String regex : OPAQUE) {
+            assertEquals(regex, Collections.emptyList(),
+                         MessageIndex.literals(regex));
+        }
+    }
+
+    /** Check that every message a regular expression matches contains its
+     *  literals and is among the candidates the index gives for them,
+     *  over enough messages that the journal is compacted. */
+    @Test
+    public void candidatesAgainstScan() throws IOException {
+        Random rand = new Random(61);
+        ArrayList<String> messages = new ArrayList<>();
+        for (int k = 0; k < MessageIndex.COMPACT_AT + 500; k += 1) {
+            StringBuilder message = new StringBuilder();
+            for (int n = rand.nextInt(6); n >= 0; n -= 1) {
+                message.append(PIECES[rand.nextInt(PIECES.length)]);
+            }
+            messages.add(message.toString());
+        }
+        File sorted = File.createTempFile("messages", ".idx");
+        File journal = File.createTempFile("messages", ".jnl");
+        sorted.delete();
+        journal.delete();
+        try {
+            MessageIndex index = new MessageIndex(sorted, journal);
+            for (int k = 0; k < messages.size(); k += 1) {
+                index.add(k, messages.get(k));
+            }
+            assertEquals(messages.size(), index.size());
+            index = new MessageIndex(sorted, journal);
+            assertEquals(messages.size(), index.size());
+
+            ArrayList<String> regexes = new ArrayList<>();
+            for (String[] test : REGEXES) {
+                regexes.add(test[0]);
+            }
+            regexes.addAll(Arrays.asList(OPAQUE));
+            for (String regex : regexes) {
+                check(regex, messages, index);
+            }
+        } finally {
+            sorted.delete();
+            journal.delete();
+        }
+    }
+
+    /** Check REGEX against INDEX, which holds MESSAGES. */
+    private static void check(String regex, List<String> messages,
+                              MessageIndex index) {
+        Pattern pattern = Pattern.compile(regex);
+        List<String> literals = MessageIndex.literals(regex);
+        int[] candidates = index.candidates(literals);
+        assertEquals(regex, literals.isEmpty(), candidates == null);
+        int next = 0;
+        for (int k = 0; k < messages.size(); k += 1) {
+            String message = messages.get(k);
+            boolean candidate = candidates == null
+                || (next < candidates.length && candidates[next] == k);
+            if (candidates != null && candidate) {
+                next += 1;
+            }
+            if (pattern.matcher(message).find()) {
+                assertTrue(regex + " in " + message, candidate);
+                for (String literal : literals) {
+                    assertTrue(regex + " in " + message,
+                               message.contains(literal));
+                }
+            }
+        }
+        if (candidates != null) {
+            assertEquals(regex, candidates.length, next);
+        }
+    }
+
+}
@@ -0,0 +1,225 @@
+package gitlet;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/** The sha1 naming a commit, tree or blob.  Its 20 bytes are held in
+ *  three primitive fields rather than as 40 hex chars, so an id costs a
+ *  quarter of the memory of its hex string, hashes and compares without
+ *  touching any array, and orders as its hex form would.  Hex is only
+ *  made when an id is shown or used as a file name.  Each thread also
+ *  has one SHA-1 digest, reused for every id it computes.
+ *  @author Chuhui Han
+ */
+final class ObjectId implements Comparable<ObjectId>, Serializable {
+
+    /** Fixed so that ids written into existing commits and branches stay
+     *  readable when this class changes. */
+    private static final long serialVersionUID = 3290201405730689972L;
+
+    /** Bytes in an id. */
+    static final int BYTES = 20;
+    /** Chars in the hex form of an id. */
+    static final int HEX_LENGTH = 2 * BYTES;
+    /** The id of all zero bytes, which names no object. */
+    static final ObjectId ZERO = new ObjectId(0, 0, 0);
+
+    /** The id whose bytes, read as big-endian numbers, are W0, W1 and
+     *  W2. */
+    private ObjectId(long w0, long w1, int w2) {
+        _w0 = w0;
+        _w1 = w1;
+        _w2 = w2;
+    }
+
+    /** Return the id held in BYTES[OFFSET .. OFFSET + 19]. */
+    static ObjectId fromBytes(byte[] bytes, int offset) {
+        return read(ByteBuffer.wrap(bytes), offset);
+    }
+
+    /** Return the id held in BUFFER at index START, leaving BUFFER's
+     *  position alone. */
+    static ObjectId read(ByteBuffer buffer, int start) {
+        return new ObjectId(buffer.getLong(start), buffer.getLong(start + 8),
+                            buffer.getInt(start + 16));
+    }
+
+    /** Return the id whose hex form is HEX.  Throws
+     *  IllegalArgumentException if HEX is not 40 hex digits. */
+    static ObjectId parse(String hex) {
+        if (!isHex(hex)) {
+            throw new IllegalArgumentException("bad object id " + hex);
+        }
+        return new ObjectId(parseLong(hex, 0, 16), parseLong(hex, 16, 16),
+                            (int) parseLong(hex, 32, 8));
+    }
+
+    /** Return true iff TEXT is the hex form of an id. */
+    static boolean isHex(String text) {
+        if (text == null || text.length() != HEX_LENGTH) {
+            return false;
+        }
+        for (int k = 0; k < HEX_LENGTH; k += 1) {
+            if (digit(text.charAt(k)) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Return the id of the SHA-1 hash of the concatenation of VALS,
+     *  which may be any mixture of byte arrays and Strings. */
+    static ObjectId hash(Object... vals) {
+        MessageDigest md = digest();
+        for (Object val : vals) {
+            if (val instanceof byte[]) {
+                md.update((byte[]) val);
+            } else if (val instanceof String) {
+                md.update(((String) val).getBytes(StandardCharsets.UTF_8));
+            } else {
+                throw new IllegalArgumentException("improper type to sha1");
+            }
+        }
+        return finish(md);
+    }
+
+    /** Return this thread's SHA-1 digest, reset.  It must be finished
+     *  before the thread hashes anything else. */
+    static MessageDigest digest() {
+        MessageDigest result = DIGEST.get();
+        result.reset();
+        return result;
+    }
+
+    /** Return a new SHA-1 digest, for a hash computed a piece at a time
+     *  while other things are hashed. */
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException excp) {
+            throw new IllegalArgumentException("System does not support SHA-1");
+        }
+    }
+
+    /** Return the id of the hash computed so far by MD, resetting MD. */
+    static ObjectId finish(MessageDigest md) {
+        byte[] result = RESULT.get();
+        try {
+            md.digest(result, 0, BYTES);
+        } catch (DigestException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return fromBytes(result, 0);
+    }
+
+    /** Write this id's bytes to BUFFER at its position, advancing it. */
+    void write(ByteBuffer buffer) {
+        buffer.putLong(_w0).putLong(_w1).putInt(_w2);
+    }
+
+    /** Return this id's bytes. */
+    byte[] toBytes() {
+        ByteBuffer result = ByteBuffer.allocate(BYTES);
+        write(result);
+        return result.array();
+    }
+
+    /** Return the first byte of this id, from 0 to 255. */
+    int firstByte() {
+        return (int) (_w0 >>> 56);
+    }
+
+    /** Append this id's hex form to OUT. */
+    void appendTo(StringBuilder out) {
+        appendHex(out, _w0, 16);
+        appendHex(out, _w1, 16);
+        appendHex(out, _w2, 8);
+    }
+
+    /** Return the first N digits of this id's hex form. */
+    String abbreviate(int n) {
+        return toString().substring(0, n);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder(HEX_LENGTH);
+        appendTo(result);
+        return result.toString();
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (_w0 >>> 32);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof ObjectId)) {
+            return false;
+        }
+        ObjectId other = (ObjectId) obj;
+        return _w0 == other._w0 && _w1 == other._w1 && _w2 == other._w2;
+    }
+
+    @Override
+    public int compareTo(ObjectId other) {
+        int c = Long.compareUnsigned(_w0, other._w0);
+        if (c == 0) {
+            c = Long.compareUnsigned(_w1, other._w1);
+        }
+        if (c == 0) {
+            c = Integer.compareUnsigned(_w2, other._w2);
+        }
+        return c;
+    }
+
+    /** Append the last DIGITS hex digits of VALUE to OUT. */
+    private static void appendHex(StringBuilder out, long value,
+                                  int digits) {
+        for (int shift = 4 * (digits - 1); shift >= 0; shift -= 4) {
+            out.append(HEX[(int) (value >>> shift) & 0xf]);
+        }
+    }
+
+    /** Return the number whose hex form is TEXT[START .. START + DIGITS
+     *  - 1], which are known to be hex digits. */
+    private static long parseLong(String text, int start, int digits) {
+        long result = 0;
+        for (int k = start; k < start + digits; k += 1) {
+            result = (result << 4) | digit(text.charAt(k));
+        }
+        return result;
+    }
+
+    /** Return the value of the lowercase hex digit C, or -1. */
+    private static int digit(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        } else if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        return -1;
+    }
+
+    /** Hexadecimal digits. */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /** Each thread's digest. */
+    private static final ThreadLocal<MessageDigest> DIGEST =
+        ThreadLocal.withInitial(ObjectId::newDigest);
+    /** Each thread's buffer for a finished digest. */
+    private static final ThreadLocal<byte[]> RESULT =
+        ThreadLocal.withInitial(() -> new byte[BYTES]);
+
+    /** The first eight bytes. */
+    private final long _w0;
+    /** The next eight bytes. */
+    private final long _w1;
+    /** The last four bytes. */
+    private final int _w2;
+}
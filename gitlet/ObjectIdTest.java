@@ -0,0 +1,112 @@
+package gitlet;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of ObjectId.
+ *  @author Chuhui Han
+ */
+public class ObjectIdTest {
+
+    /** Return an id of random bytes from RAND.  Its first byte is drawn
+     *  from only FIRSTS values, so that ids share prefixes. */
+    private static ObjectId randomId(Random rand, int firsts) {
+        byte[] bytes = new byte[ObjectId.BYTES];
+        rand.nextBytes(bytes);
+        bytes[0] = (byte) (0x7e + rand.nextInt(firsts));
+        return ObjectId.fromBytes(bytes, 0);
+    }
+
+    /** Check that parsing hex and printing it again gives the same hex,
+     *  and that anything else is refused. */
+    @Test
+    public void parseRoundTrip() {
+        Random rand = new Random(61);
+        for (int k = 0; k < 200; k += 1) {
+            String hex = randomId(rand, 256).toString();
+            assertEquals(ObjectId.HEX_LENGTH, hex.length());
+            assertTrue(ObjectId.isHex(hex));
+            assertEquals(hex, ObjectId.parse(hex).toString());
+            assertEquals(hex.substring(0, 7),
+                         ObjectId.parse(hex).abbreviate(7));
+        }
+        assertEquals("da39a3ee5e6b4b0d3255bfef95601890afd80709",
+                     ObjectId.hash("").toString());
+        assertEquals("0000000000000000000000000000000000000000",
+                     ObjectId.ZERO.toString());
+        String[] bad = {
+            null, "", "da39a3ee", "DA39A3EE5E6B4B0D3255BFEF95601890AFD80709",
+            "da39a3ee5e6b4b0d3255bfef95601890afd8070g",
+            "da39a3ee5e6b4b0d3255bfef95601890afd807090",
+        };
+        for (String hex : bad) {
+            assertFalse(ObjectId.isHex(hex));
+        }
+        try {
+            ObjectId.parse("da39a3ee");
+            fail("parsed a short id");
+        } catch (IllegalArgumentException excp) {
+            /* Expected. */
+        }
+    }
+
+    /** Check that reading bytes and writing them again gives the same
+     *  bytes, at any offset. */
+    @Test
+    public void bytesRoundTrip() {
+        Random rand = new Random(61);
+        for (int k = 0; k < 200; k += 1) {
+            byte[] bytes = new byte[ObjectId.BYTES + 7];
+            rand.nextBytes(bytes);
+            int start = rand.nextInt(8);
+            byte[] expected =
+                Arrays.copyOfRange(bytes, start, start + ObjectId.BYTES);
+            ObjectId id = ObjectId.fromBytes(bytes, start);
+            assertArrayEquals(expected, id.toBytes());
+            assertEquals(expected[0] & 0xff, id.firstByte());
+
+            ByteBuffer buffer = ByteBuffer.allocate(ObjectId.BYTES + 3);
+            buffer.position(3);
+            id.write(buffer);
+            assertEquals(ObjectId.BYTES + 3, buffer.position());
+            assertEquals(id, ObjectId.read(buffer, 3));
+            assertEquals(id.hashCode(), ObjectId.read(buffer, 3).hashCode());
+        }
+    }
+
+    /** Check that ids order as their hex forms do, including where a
+     *  byte's top bit differs. */
+    @Test
+    public void compareMatchesHexOrder() {
+        Random rand = new Random(61);
+        ArrayList<ObjectId> ids = new ArrayList<>();
+        for (int k = 0; k < 300; k += 1) {
+            ids.add(randomId(rand, 4));
+        }
+        byte[] low = new byte[ObjectId.BYTES];
+        byte[] high = new byte[ObjectId.BYTES];
+        for (int k : new int[] { 0, 7, 8, 15, 16, 19 }) {
+            Arrays.fill(low, (byte) 0);
+            Arrays.fill(high, (byte) 0);
+            low[k] = 0x7f;
+            high[k] = (byte) 0x80;
+            ids.add(ObjectId.fromBytes(low, 0));
+            ids.add(ObjectId.fromBytes(high, 0));
+        }
+        for (ObjectId a : ids) {
+            for (ObjectId b : ids) {
+                assertEquals(a + " " + b,
+                             Integer.signum(a.toString()
+                                            .compareTo(b.toString())),
+                             Integer.signum(a.compareTo(b)));
+                assertEquals(a.equals(b), a.compareTo(b) == 0);
+            }
+        }
+    }
+
+}
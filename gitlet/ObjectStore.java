@@ -0,0 +1,547 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/** The on-disk store of commit, tree and blob objects.  Each object lives
+ *  in its own file named by its sha1, and is only read the first time a
+ *  command asks for it, so the cost of a command depends on the objects
+ *  it touches rather than on the size of the whole history.  Object files
+ *  are encoded with the repository's Codec.  Blobs may instead have been
+ *  moved into the repository's Pack by repack.
+ *  @author Chuhui Han
+ */
+class ObjectStore {
+
+    /** A store whose commits live in COMMITDIR, trees in TREEDIR, loose
+     *  blobs in BLOBDIR and packed blobs in PACKDIR, writing new objects
+     *  with CODEC. */
+    ObjectStore(File commitDir, File treeDir, File blobDir, File packDir,
+                Codec codec) {
+        _commitDir = commitDir;
+        _treeDir = treeDir;
+        _blobDir = blobDir;
+        _packFile = new File(packDir, "objects.pack");
+        _packIndex = new File(packDir, "objects.idx");
+        _codec = codec;
+    }
+
+    /** Return the commit with full sha1 ID, or null if there is none. */
+    Commit getCommit(ObjectId id) {
+        Commit result = _commits.get(id);
+        if (result == null) {
+            File file = commitFile(id);
+            if (!file.isFile()) {
+                return null;
+            }
+            result = readObject(file, Commit.class);
+            result.attach(this);
+            _commits.put(id, result);
+        }
+        return result;
+    }
+
+    /** Return the commit with full sha1 ID, or null if there is none, as
+     *  for getCommit, but without remembering it if it had to be read, so
+     *  that walking a long history holds only one commit at a time. */
+    Commit readCommit(ObjectId id) {
+        Commit result = _commits.get(id);
+        if (result == null) {
+            File file = commitFile(id);
+            if (!file.isFile()) {
+                return null;
+            }
+            result = readObject(file, Commit.class);
+            result.attach(this);
+        }
+        return result;
+    }
+
+    /** Write the trees of COMMIT's snapshot, which is its first parent's
+     *  with CHANGES applied, fixing COMMIT's sha1, then write COMMIT itself
+     *  and remember it.  CHANGES maps each path that changed to its new
+     *  blob sha1, or to null if it was removed. */
+    void putCommit(Commit commit, TreeMap<String, ObjectId> changes) {
+        ObjectId base = null;
+        if (commit.getParentSha1() != null) {
+            base = getCommit(commit.getParentSha1()).getTreeSha1();
+        }
+        commit.setTree(putTree(base, changes));
+        commit.attach(this);
+        writeObject(commitFile(commit.getSha1()), commit);
+        _commits.put(commit.getSha1(), commit);
+    }
+
+    /** Return the tree with sha1 ID. */
+    Tree getTree(ObjectId id) {
+        Tree result = _trees.get(id);
+        if (result == null) {
+            result = readObject(treeFile(id), Tree.class);
+            _trees.put(id, result);
+        }
+        return result;
+    }
+
+    /** Write the trees of the snapshot made by applying CHANGES to the
+     *  tree with sha1 BASE, or to an empty tree if BASE is null, and return
+     *  the sha1 of its root.  CHANGES maps paths, relative to BASE's
+     *  directory, to blob sha1s, or to null for removed files.  Only the
+     *  trees of directories holding changes are rebuilt; all others are
+     *  shared with BASE. */
+    ObjectId putTree(ObjectId base, TreeMap<String, ObjectId> changes) {
+        Tree tree = base == null ? Tree.EMPTY : getTree(base);
+        TreeMap<String, ObjectId> files = new TreeMap<>(tree.getFiles());
+        TreeMap<String, ObjectId> dirs = new TreeMap<>(tree.getDirs());
+        String path = changes.isEmpty() ? null : changes.firstKey();
+        while (path != null) {
+            int slash = path.indexOf('/');
+            if (slash == -1) {
+                if (changes.get(path) == null) {
+                    files.remove(path);
+                } else {
+                    files.put(path, changes.get(path));
+                }
+                path = changes.higherKey(path);
+                continue;
+            }
+            String dir = path.substring(0, slash);
+            SortedMap<String, ObjectId> inDir =
+                changes.subMap(dir + "/", dir + (char) ('/' + 1));
+            TreeMap<String, ObjectId> relative = new TreeMap<>();
+            for (Map.Entry<String, ObjectId> entry : inDir.entrySet()) {
+                relative.put(entry.getKey().substring(slash + 1),
+                             entry.getValue());
+            }
+            ObjectId sub = putTree(dirs.get(dir), relative);
+            if (getTree(sub).isEmpty()) {
+                dirs.remove(dir);
+            } else {
+                dirs.put(dir, sub);
+            }
+            path = changes.ceilingKey(dir + (char) ('/' + 1));
+        }
+        Tree result = new Tree(files, dirs);
+        putTree(result);
+        return result.getSha1();
+    }
+
+    /** Return every file of the tree with sha1 ID and its subtrees,
+     *  mapped by path to its blob sha1.  Each snapshot is made from the
+     *  one made before it by applying the differences between their
+     *  trees, so snapshots of neighbouring commits, as when walking the
+     *  history, share all but the paths that changed. */
+    Snapshot getFiles(ObjectId id) {
+        Snapshot result = _snapshots.get(id);
+        if (result == null) {
+            ObjectId last = _lastSnapshot;
+            result = last == null ? Snapshot.EMPTY : _snapshots.get(last);
+            result = result.apply(TreeDiff.changes(this, last, id));
+            _snapshots.put(id, result);
+        }
+        _lastSnapshot = id;
+        return result;
+    }
+
+    /** Write TREE to its object file unless it is already stored. */
+    void putTree(Tree tree) {
+        File file = treeFile(tree.getSha1());
+        if (!file.exists()) {
+            writeObject(file, tree);
+        }
+        _trees.put(tree.getSha1(), tree);
+    }
+
+    /** Return a stream of the contents of the blob with sha1 ID. */
+    InputStream openBlob(ObjectId id) throws IOException {
+        File file = blobFile(id);
+        if (file.isFile()) {
+            return Codec.open(new FileInputStream(file));
+        }
+        byte[] packed = pack() == null ? null : pack().read(id);
+        if (packed == null) {
+            throw new FileNotFoundException("no blob " + id);
+        }
+        return new ByteArrayInputStream(packed);
+    }
+
+    /** Return the contents of the blob with sha1 ID.  Loose blobs are not
+     *  cached, since they carry whole file contents. */
+    byte[] readBlob(ObjectId id) {
+        if (!blobFile(id).isFile() && pack() != null && pack().contains(id)) {
+            return pack().read(id);
+        }
+        try (InputStream in = openBlob(id)) {
+            return in.readAllBytes();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Write the contents of the blob with sha1 ID to DEST, creating or
+     *  overwriting it and any missing directories above it, without
+     *  holding them in memory.  Blobs may be copied by several threads at
+     *  once. */
+    void copyBlob(ObjectId id, File dest) {
+        dest.getAbsoluteFile().getParentFile().mkdirs();
+        try (InputStream in = openBlob(id)) {
+            Files.copy(in, dest.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Store the current contents of FILE as a blob and return it.  The
+     *  contents are hashed and encoded into a temporary object file in
+     *  the same pass, which is then renamed to the blob's sha1.  Blobs
+     *  may be stored by several threads at once. */
+    Blob putBlob(File file) {
+        File temp = null;
+        try {
+            temp = File.createTempFile("blob", ".tmp", _blobDir);
+            Blob blob;
+            try (OutputStream out = _codec.wrap(new BufferedOutputStream(
+                    new FileOutputStream(temp), Blob.CHUNK_SIZE))) {
+                blob = new Blob(file, Channels.newChannel(out));
+            }
+            return install(temp, blob);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            if (temp != null) {
+                temp.delete();
+            }
+        }
+    }
+
+    /** Return a stream that writes what is written to it to the file
+     *  DEST, creating or replacing it, and stores it as the blob of that
+     *  file in the same pass, so the file need never be read back.  Once
+     *  the stream is closed, getBlob() returns that blob. */
+    BlobOutput writeBlob(File dest) throws IOException {
+        return new BlobOutput(dest);
+    }
+
+    /** Give the blob BLOB, whose encoded contents are in the temporary
+     *  file TEMP, its object file unless it already has one, and return
+     *  it.  If compression did not shrink the contents, the object is
+     *  rewritten raw.  TEMP is left for the caller to delete. */
+    private Blob install(File temp, Blob blob) throws IOException {
+        if (hasBlob(blob.getSha1())) {
+            return blob;
+        }
+        File source = temp, raw = null;
+        try {
+            if (!Codec.shrank(temp.length(), blob.getSize())) {
+                raw = File.createTempFile("blob", ".tmp", _blobDir);
+                try (InputStream in = Codec.open(new FileInputStream(temp));
+                     OutputStream out = new FileOutputStream(raw)) {
+                    out.write(Codec.STORED);
+                    in.transferTo(out);
+                }
+                source = raw;
+            }
+            Files.move(source.toPath(), blobFile(blob.getSha1()).toPath(),
+                    StandardCopyOption.ATOMIC_MOVE);
+            return blob;
+        } finally {
+            if (raw != null) {
+                raw.delete();
+            }
+        }
+    }
+
+    /** A stream writing a working file and storing it as a blob. */
+    class BlobOutput extends OutputStream {
+
+        /** A stream writing to DEST. */
+        private BlobOutput(File dest) throws IOException {
+            dest.getAbsoluteFile().getParentFile().mkdirs();
+            _name = dest.getName();
+            _digest = Blob.digest(_name);
+            _temp = File.createTempFile("blob", ".tmp", _blobDir);
+            try {
+                _encoded = _codec.wrap(new BufferedOutputStream(
+                        new FileOutputStream(_temp), Blob.CHUNK_SIZE));
+                _copy = new BufferedOutputStream(new FileOutputStream(dest),
+                        Blob.CHUNK_SIZE);
+            } catch (IOException excp) {
+                _temp.delete();
+                throw excp;
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            _digest.update((byte) b);
+            _encoded.write(b);
+            _copy.write(b);
+            _size += 1;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            _digest.update(b, off, len);
+            _encoded.write(b, off, len);
+            _copy.write(b, off, len);
+            _size += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (_closed) {
+                return;
+            }
+            _closed = true;
+            try {
+                _encoded.close();
+                _blob = install(_temp, new Blob(_name, _size,
+                        ObjectId.finish(_digest)));
+            } finally {
+                _temp.delete();
+                _copy.close();
+            }
+        }
+
+        /** Close this stream without storing anything written to it, as
+         *  when whatever was producing its contents failed.  Closing it
+         *  afterwards does nothing. */
+        void abort() {
+            if (_closed) {
+                return;
+            }
+            _closed = true;
+            try {
+                _encoded.close();
+            } catch (IOException excp) {
+                /* Nothing written is kept in any case. */
+            } finally {
+                _temp.delete();
+                try {
+                    _copy.close();
+                } catch (IOException excp) {
+                    /* Likewise. */
+                }
+            }
+        }
+
+        /** Return the blob stored, once this stream is closed. */
+        Blob getBlob() {
+            return _blob;
+        }
+
+        /** The name of the file written. */
+        private final String _name;
+        /** The hash so far of the name and contents. */
+        private final MessageDigest _digest;
+        /** The temporary file holding the encoded contents so far. */
+        private final File _temp;
+        /** The stream encoding into _temp. */
+        private OutputStream _encoded;
+        /** The stream writing the file itself. */
+        private OutputStream _copy;
+        /** The number of bytes written so far. */
+        private long _size;
+        /** The blob stored, once closed. */
+        private Blob _blob;
+        /** True once this stream is closed or aborted. */
+        private boolean _closed;
+    }
+
+    /** Return true iff a blob with sha1 ID has been stored. */
+    boolean hasBlob(ObjectId id) {
+        return blobFile(id).isFile()
+            || (pack() != null && pack().contains(id));
+    }
+
+    /** Move every blob, loose or packed, into a new pack.  GROUPS lists
+     *  the versions of each file, most recent first; each version is
+     *  stored as a delta against one of the WINDOW versions before it if
+     *  that is smaller, keeping delta chains at most MAX_DEPTH long.
+     *  Blobs in no group are stored whole. */
+    void repack(Collection<? extends Collection<ObjectId>> groups)
+        throws IOException {
+        LinkedHashSet<ObjectId> remaining = new LinkedHashSet<>();
+        for (String name : Utils.plainFilenamesIn(_blobDir)) {
+            if (looseId(name) != null) {
+                remaining.add(looseId(name));
+            }
+        }
+        if (pack() != null) {
+            for (ObjectId id : pack().ids()) {
+                remaining.add(id);
+            }
+        }
+
+        File newPack = new File(_packFile.getPath() + ".tmp");
+        File newIndex = new File(_packIndex.getPath() + ".tmp");
+        _packFile.getParentFile().mkdirs();
+        Pack.Writer writer = new Pack.Writer(newPack, _codec);
+        for (Collection<ObjectId> group : groups) {
+            ArrayDeque<PackedVersion> window = new ArrayDeque<>();
+            for (ObjectId id : group) {
+                if (!remaining.remove(id)) {
+                    continue;
+                }
+                PackedVersion version = pack(writer, id, window);
+                window.addFirst(version);
+                if (window.size() > Pack.WINDOW) {
+                    window.removeLast();
+                }
+            }
+        }
+        for (ObjectId id : remaining) {
+            writer.addFull(id, readBlob(id));
+        }
+        writer.finish(newIndex);
+
+        if (_pack != null) {
+            _pack.close();
+            _pack = null;
+        }
+        Files.move(newPack.toPath(), _packFile.toPath(),
+                   StandardCopyOption.REPLACE_EXISTING);
+        Files.move(newIndex.toPath(), _packIndex.toPath(),
+                   StandardCopyOption.REPLACE_EXISTING);
+        for (String name : Utils.plainFilenamesIn(_blobDir)) {
+            if (looseId(name) != null && pack().contains(looseId(name))) {
+                new File(_blobDir, name).delete();
+            }
+        }
+    }
+
+    /** Add the blob with sha1 ID to WRITER, as a delta against the best
+     *  of the versions in WINDOW or else whole, and return its entry. */
+    private PackedVersion pack(Pack.Writer writer, ObjectId id,
+                               Collection<PackedVersion> window)
+        throws IOException {
+        byte[] contents = readBlob(id);
+        PackedVersion best = null;
+        byte[] bestDelta = null;
+        for (PackedVersion base : window) {
+            if (base.depth >= Pack.MAX_DEPTH) {
+                continue;
+            }
+            byte[] delta = Delta.create(base.contents, contents);
+            if (delta.length < contents.length
+                && (bestDelta == null || delta.length < bestDelta.length)) {
+                best = base;
+                bestDelta = delta;
+            }
+        }
+        if (best == null) {
+            return new PackedVersion(contents, writer.addFull(id, contents),
+                                     0);
+        }
+        return new PackedVersion(contents,
+                                 writer.addDelta(id, best.offset, bestDelta),
+                                 best.depth + 1);
+    }
+
+    /** A blob just written to a pack, kept while it may serve as a base. */
+    private static class PackedVersion {
+        /** A version holding CONTENTS, at OFFSET, with DEPTH deltas
+         *  between it and a whole entry. */
+        PackedVersion(byte[] contents, long offset, int depth) {
+            this.contents = contents;
+            this.offset = offset;
+            this.depth = depth;
+        }
+
+        /** The blob's contents. */
+        private final byte[] contents;
+        /** Offset of its entry. */
+        private final long offset;
+        /** Length of its delta chain. */
+        private final int depth;
+    }
+
+    /** Return the repository's pack, opening it on first use, or null if
+     *  there is none.  Blobs may be stored from several threads, which
+     *  all look here first. */
+    private synchronized Pack pack() {
+        if (_pack == null && _packFile.isFile()) {
+            _pack = new Pack(_packFile, _packIndex);
+        }
+        return _pack;
+    }
+
+    /** Return the object of type T encoded in FILE, casting it to
+     *  EXPECTEDCLASS. */
+    private <T extends Serializable> T readObject(File file,
+                                                  Class<T> expectedClass) {
+        return Utils.deserialize(Codec.decode(Utils.readContents(file)),
+                                 expectedClass);
+    }
+
+    /** Write OBJ to FILE, encoded with this store's codec. */
+    private void writeObject(File file, Serializable obj) {
+        Utils.writeContents(file, _codec.encode(Utils.serialize(obj)));
+    }
+
+    /** Return the sha1 of the loose blob whose object file is named NAME,
+     *  or null if NAME is not an object file. */
+    private static ObjectId looseId(String name) {
+        String id = name.replace(".txt", "");
+        return name.endsWith(".txt") && ObjectId.isHex(id)
+            ? ObjectId.parse(id) : null;
+    }
+
+    /** Return the object file for the commit with sha1 ID. */
+    private File commitFile(ObjectId id) {
+        return new File(_commitDir, id + ".txt");
+    }
+
+    /** Return the object file for the tree with sha1 ID. */
+    private File treeFile(ObjectId id) {
+        return new File(_treeDir, id + ".txt");
+    }
+
+    /** Return the object file for the blob with sha1 ID. */
+    private File blobFile(ObjectId id) {
+        return new File(_blobDir, id + ".txt");
+    }
+
+    /** Directory holding one file per commit. */
+    private final File _commitDir;
+    /** Directory holding one file per tree. */
+    private final File _treeDir;
+    /** Directory holding one file per blob. */
+    private final File _blobDir;
+    /** The pack file. */
+    private final File _packFile;
+    /** The index of the pack file. */
+    private final File _packIndex;
+    /** The open pack, or null if not yet opened. */
+    private Pack _pack;
+    /** The encoding given to newly written objects. */
+    private final Codec _codec;
+    /** Commits already read during this command, by sha1. */
+    private final HashMap<ObjectId, Commit> _commits = new HashMap<>();
+    /** Trees already read during this command, by sha1. */
+    private final HashMap<ObjectId, Tree> _trees = new HashMap<>();
+    /** Whole snapshots already listed during this command, by the sha1
+     *  of their root trees. */
+    private final HashMap<ObjectId, Snapshot> _snapshots = new HashMap<>();
+    /** The root tree sha1 of the snapshot last asked for, or null. */
+    private ObjectId _lastSnapshot;
+}
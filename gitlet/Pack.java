@@ -0,0 +1,177 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.TreeMap;
+
+/** A pack file, holding many blobs in a single file.  Each entry is either
+ *  a whole blob or a Delta against an earlier entry of the same pack, and
+ *  a PackIndex maps each blob's sha1 to the offset of its entry.  Rebuilding
+ *  a delta means first rebuilding its base, so recently rebuilt entries
+ *  are kept in a cache bounded by their total size.
+ *  @author Chuhui Han
+ */
+class Pack {
+
+    /** Entry type of a whole blob. */
+    static final int FULL = 0;
+    /** Entry type of a delta against another entry. */
+    static final int DELTA = 1;
+    /** The longest chain of deltas allowed before an entry must be whole. */
+    static final int MAX_DEPTH = 50;
+    /** How many earlier versions of a file are tried as delta bases. */
+    static final int WINDOW = 10;
+    /** Marks the start of a pack file. */
+    static final int MAGIC = 0x4750414b;
+    /** The most bytes of rebuilt entries kept in the cache. */
+    static final long CACHE_BYTES = 1L << 24;
+
+    /** The pack stored in PACKFILE, with its index in INDEXFILE. */
+    Pack(File packFile, File indexFile) {
+        _index = new PackIndex(indexFile);
+        try {
+            _file = new RandomAccessFile(packFile, "r");
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return true iff the blob with sha1 ID is in this pack. */
+    boolean contains(ObjectId id) {
+        return _index.lookup(id) != -1;
+    }
+
+    /** Return the sha1s of all blobs in this pack. */
+    ArrayList<ObjectId> ids() {
+        ArrayList<ObjectId> result = new ArrayList<>(_index.size());
+        for (int k = 0; k < _index.size(); k += 1) {
+            result.add(_index.idAt(k));
+        }
+        return result;
+    }
+
+    /** Return the contents of the blob with sha1 ID, or null if it is not
+     *  in this pack.  Blobs may be read by several threads at once. */
+    synchronized byte[] read(ObjectId id) {
+        long offset = _index.lookup(id);
+        if (offset == -1) {
+            return null;
+        }
+        try {
+            return readAt(offset);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return the contents of the entry at OFFSET. */
+    private byte[] readAt(long offset) throws IOException {
+        byte[] result = _cache.get(offset);
+        if (result != null) {
+            return result;
+        }
+        _file.seek(offset);
+        int type = _file.readByte();
+        long baseOffset = type == DELTA ? _file.readLong() : -1;
+        byte[] payload = new byte[_file.readInt()];
+        _file.readFully(payload);
+        result = Codec.decode(payload);
+        if (type == DELTA) {
+            result = Delta.apply(readAt(baseOffset), result);
+        }
+        _cache.put(offset, result);
+        _cacheBytes += result.length;
+        Iterator<byte[]> eldest = _cache.values().iterator();
+        while (_cacheBytes > CACHE_BYTES) {
+            _cacheBytes -= eldest.next().length;
+            eldest.remove();
+        }
+        return result;
+    }
+
+    /** Release the pack file. */
+    void close() {
+        try {
+            _file.close();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Writes a new pack file and its index. */
+    static class Writer {
+
+        /** A writer of a pack to PACKFILE, encoding entries with CODEC. */
+        Writer(File packFile, Codec codec) throws IOException {
+            _codec = codec;
+            _out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(packFile), Blob.CHUNK_SIZE));
+            _out.writeInt(MAGIC);
+            _offset = 4;
+        }
+
+        /** Add the blob with sha1 ID and CONTENTS as a whole entry, and
+         *  return the entry's offset. */
+        long addFull(ObjectId id, byte[] contents) throws IOException {
+            return add(id, FULL, -1, contents);
+        }
+
+        /** Add the blob with sha1 ID as DELTA against the entry at
+         *  BASEOFFSET, and return the entry's offset. */
+        long addDelta(ObjectId id, long baseOffset, byte[] delta)
+            throws IOException {
+            return add(id, DELTA, baseOffset, delta);
+        }
+
+        /** Add an entry of TYPE for ID holding DATA, with base BASEOFFSET
+         *  if it is a delta, and return its offset. */
+        private long add(ObjectId id, int type, long baseOffset, byte[] data)
+            throws IOException {
+            byte[] payload = _codec.encode(data);
+            long start = _offset;
+            _out.writeByte(type);
+            _offset += 1;
+            if (type == DELTA) {
+                _out.writeLong(baseOffset);
+                _offset += 8;
+            }
+            _out.writeInt(payload.length);
+            _out.write(payload);
+            _offset += 4 + payload.length;
+            _offsets.put(id, start);
+            return start;
+        }
+
+        /** Finish the pack file and write its index to INDEXFILE. */
+        void finish(File indexFile) throws IOException {
+            _out.close();
+            PackIndex.write(indexFile, _offsets);
+        }
+
+        /** Encoding of entry payloads. */
+        private final Codec _codec;
+        /** The pack file being written. */
+        private final DataOutputStream _out;
+        /** The offset of the next entry. */
+        private long _offset;
+        /** Offsets of the entries written so far, by sha1. */
+        private final TreeMap<ObjectId, Long> _offsets = new TreeMap<>();
+    }
+
+    /** The pack file. */
+    private final RandomAccessFile _file;
+    /** The offset of each blob's entry, by sha1. */
+    private final PackIndex _index;
+    /** Total size of the cached entries. */
+    private long _cacheBytes;
+    /** Recently rebuilt entries, by offset, least recently used first. */
+    private final LinkedHashMap<Long, byte[]> _cache =
+        new LinkedHashMap<>(16, 0.75f, true);
+}
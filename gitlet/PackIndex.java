@@ -0,0 +1,158 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.SortedMap;
+
+/** The index of a pack file: a sorted table of sha1s and the offsets of
+ *  their entries, read straight from a memory-mapped file.  The file is
+ *
+ *      MAGIC, VERSION                      two ints
+ *      fan-out table                       256 ints
+ *      sha1s, in increasing order          20 bytes each
+ *      offsets, in the same order          8 bytes each
+ *
+ *  where fan-out entry b is the number of sha1s whose first byte is at
+ *  most b.  A lookup binary-searches only the sha1s sharing its first
+ *  byte, touching a few pages and deserializing nothing, and opening an
+ *  index costs the same however many objects it holds.
+ *  @author Chuhui Han
+ */
+class PackIndex {
+
+    /** Marks the start of an index file. */
+    static final int MAGIC = 0x47494458;
+    /** The index format version. */
+    static final int VERSION = 1;
+    /** Bytes in a binary sha1. */
+    static final int ID_BYTES = ObjectId.BYTES;
+    /** Offset of the fan-out table. */
+    private static final int FANOUT = 8;
+    /** Offset of the sorted sha1s. */
+    private static final int IDS = FANOUT + 256 * 4;
+
+    /** The index stored in FILE. */
+    PackIndex(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                                                    StandardOpenOption.READ)) {
+            _map = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                               channel.size());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        if (_map.getInt(0) != MAGIC || _map.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("bad pack index");
+        }
+        _size = _map.getInt(FANOUT + 255 * 4);
+        _offsets = IDS + _size * ID_BYTES;
+    }
+
+    /** Write an index of OFFSETS, keyed by sha1, to FILE. */
+    static void write(File file, SortedMap<ObjectId, Long> offsets)
+        throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            int[] fanout = new int[256];
+            for (ObjectId id : offsets.keySet()) {
+                fanout[id.firstByte()] += 1;
+            }
+            int total = 0;
+            for (int count : fanout) {
+                total += count;
+                out.writeInt(total);
+            }
+            ByteBuffer bytes = ByteBuffer.allocate(ID_BYTES);
+            for (ObjectId id : offsets.keySet()) {
+                bytes.clear();
+                id.write(bytes);
+                out.write(bytes.array());
+            }
+            for (Map.Entry<ObjectId, Long> entry : offsets.entrySet()) {
+                out.writeLong(entry.getValue());
+            }
+        }
+    }
+
+    /** Return the number of sha1s in this index. */
+    int size() {
+        return _size;
+    }
+
+    /** Return the Kth sha1 of this index. */
+    ObjectId idAt(int k) {
+        return ObjectId.read(_map, IDS + k * ID_BYTES);
+    }
+
+    /** Return the offset recorded with the Kth sha1. */
+    long offsetAt(int k) {
+        return _map.getLong(_offsets + k * 8);
+    }
+
+    /** Return the offset recorded for sha1 ID, or -1 if it is not in this
+     *  index. */
+    long lookup(ObjectId id) {
+        int k = lowerBound(id);
+        if (k < _size && idAt(k).equals(id)) {
+            return offsetAt(k);
+        }
+        return -1;
+    }
+
+    /** Return the sha1s in this index starting with the hexadecimal
+     *  PREFIX, but no more than LIMIT of them. */
+    ArrayList<ObjectId> matches(String prefix, int limit) {
+        ArrayList<ObjectId> result = new ArrayList<>();
+        if (prefix.isEmpty() || prefix.length() > 2 * ID_BYTES
+            || !prefix.matches("[0-9a-f]*")) {
+            return result;
+        }
+        String padded = prefix + ZEROS.substring(prefix.length());
+        ObjectId key = ObjectId.parse(padded);
+        for (int k = lowerBound(key); k < _size && result.size() < limit;
+             k += 1) {
+            ObjectId id = idAt(k);
+            if (!id.toString().startsWith(prefix)) {
+                break;
+            }
+            result.add(id);
+        }
+        return result;
+    }
+
+    /** Return the position of the first sha1 not less than KEY. */
+    private int lowerBound(ObjectId key) {
+        int first = key.firstByte();
+        int lo = first == 0 ? 0 : _map.getInt(FANOUT + (first - 1) * 4);
+        int hi = _map.getInt(FANOUT + first * 4);
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (idAt(mid).compareTo(key) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /** Padding for abbreviated sha1s. */
+    private static final String ZEROS = "0".repeat(2 * ID_BYTES);
+
+    /** The mapped index file. */
+    private final MappedByteBuffer _map;
+    /** Number of sha1s in the index. */
+    private final int _size;
+    /** Offset of the table of entry offsets. */
+    private final int _offsets;
+}
@@ -0,0 +1,123 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of PackIndex, against a scan of the sha1s it was written from.
+ *  @author Chuhui Han
+ */
+public class PackIndexTest {
+
+    /** Return a random sha1 from RAND.  Its first byte is drawn from only
+     *  FIRSTS values around 0x80, so that sha1s share prefixes and
+     *  straddle the sign bit. */
+    private static ObjectId randomId(Random rand, int firsts) {
+        byte[] bytes = new byte[ObjectId.BYTES];
+        rand.nextBytes(bytes);
+        bytes[0] = (byte) (0x7e + rand.nextInt(firsts));
+        return ObjectId.fromBytes(bytes, 0);
+    }
+
+    /** Return an index of OFFSETS written to FILE. */
+    private static PackIndex write(File file,
+                                   TreeMap<ObjectId, Long> offsets)
+        throws IOException {
+        PackIndex.write(file, offsets);
+        return new PackIndex(file);
+    }
+
+    /** Check that every sha1 written is found at its offset and in
+     *  order, and that others are not found. */
+    @Test
+    public void lookupRoundTrip() throws IOException {
+        Random rand = new Random(61);
+        TreeMap<ObjectId, Long> offsets = new TreeMap<>();
+        for (int k = 0; k < 2000; k += 1) {
+            offsets.put(randomId(rand, 3), 12L * k + (1L << 33));
+        }
+        File file = File.createTempFile("pack", ".idx");
+        try {
+            PackIndex index = write(file, offsets);
+            assertEquals(offsets.size(), index.size());
+            int k = 0;
+            for (ObjectId id : offsets.keySet()) {
+                assertEquals(id, index.idAt(k));
+                assertEquals((long) offsets.get(id), index.offsetAt(k));
+                assertEquals((long) offsets.get(id), index.lookup(id));
+                k += 1;
+            }
+            for (k = 0; k < 100; k += 1) {
+                ObjectId id = randomId(rand, 5);
+                if (!offsets.containsKey(id)) {
+                    assertEquals(-1, index.lookup(id));
+                }
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    /** Check an index of no sha1s. */
+    @Test
+    public void emptyIndex() throws IOException {
+        File file = File.createTempFile("pack", ".idx");
+        try {
+            PackIndex index = write(file, new TreeMap<>());
+            assertEquals(0, index.size());
+            assertEquals(-1, index.lookup(randomId(new Random(61), 1)));
+            assertTrue(index.matches("7e", 4).isEmpty());
+        } finally {
+            file.delete();
+        }
+    }
+
+    /** Check finding the sha1s that start with a prefix against a scan
+     *  of all of them. */
+    @Test
+    public void prefixMatching() throws IOException {
+        Random rand = new Random(61);
+        TreeMap<ObjectId, Long> offsets = new TreeMap<>();
+        for (int k = 0; k < 2000; k += 1) {
+            offsets.put(randomId(rand, 3), (long) k);
+        }
+        ArrayList<String> ids = new ArrayList<>();
+        for (ObjectId id : offsets.keySet()) {
+            ids.add(id.toString());
+        }
+        File file = File.createTempFile("pack", ".idx");
+        try {
+            PackIndex index = write(file, offsets);
+            for (int k = 0; k < 500; k += 1) {
+                String prefix = ids.get(rand.nextInt(ids.size()))
+                    .substring(0, 1 + rand.nextInt(ObjectId.HEX_LENGTH));
+                if (k % 5 == 0) {
+                    prefix = prefix.substring(0, prefix.length() - 1)
+                        + "0123456789abcdef".charAt(rand.nextInt(16));
+                }
+                int limit = 1 + rand.nextInt(4);
+                ArrayList<String> expected = new ArrayList<>();
+                for (String id : ids) {
+                    if (id.startsWith(prefix) && expected.size() < limit) {
+                        expected.add(id);
+                    }
+                }
+                ArrayList<String> found = new ArrayList<>();
+                for (ObjectId id : index.matches(prefix, limit)) {
+                    found.add(id.toString());
+                }
+                assertEquals(prefix, expected, found);
+            }
+            assertTrue(index.matches("", 4).isEmpty());
+            assertTrue(index.matches("7G", 4).isEmpty());
+        } finally {
+            file.delete();
+        }
+    }
+
+}
@@ -1,15 +1,38 @@
 package gitlet;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Serializable;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Hashtable;
-import java.util.LinkedList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
 import java.util.TreeMap;
-import java.util.Arrays;
+import java.util.TreeSet;
 import java.util.Map;
-import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 /***
  * This class contains everything that a git repo needs to run, such
@@ -20,24 +43,35 @@ import java.util.Set;
 
 public class Repo implements Serializable {
 
-    /** a dictionary of Sha1 Strings and fileContents String
-     *  that make up name and blob. */
-    private Hashtable<String, Blob> nameBlob = new Hashtable<String, Blob>();
+    /** arrayList of all branches, or "pointers" to certain head commits. */
+    private ArrayList<Branch> _branches = new ArrayList<>();
 
-    /** HashTable of commits. */
-    private Hashtable<String, Commit> _commits = new Hashtable<>();
+    /** the commits and blobs, read from .gitlet only when needed. */
+    private transient ObjectStore _store;
 
-    /** Linked List of commit Sha1 names. */
-    private LinkedList<String> sha1Commits = new LinkedList<>();
+    /** the index of commit sha1s, opened when needed. */
+    private transient CommitIndex _commitIndex;
 
-    /** arrayList of all branches, or "pointers" to certain head commits. */
-    private ArrayList<Branch> _branches = new ArrayList<>();
+    /** the commit graph, opened when needed. */
+    private transient CommitGraph _commitGraph;
+
+    /** the catalogue of all commits, opened when needed. */
+    private transient CommitCatalog _catalog;
+
+    /** the index of commit messages, opened when needed. */
+    private transient MessageIndex _messageIndex;
 
-    /** the head of the commit tree, changes according to commits. */
-    private Commit head;
+    /** the commit graph loaded for queries, built when needed. */
+    private transient Graph _graph;
 
-    /** Master branch. */
-    private Branch master;
+    /** the index of staged and tracked files, read when needed. */
+    private transient Index _index;
+
+    /** the hasher of working files, shared by all checks. */
+    private transient Hasher _hasher;
+
+    /** Size of the buffer log output is written through. */
+    private static final int LOG_BUFFER = 1 << 20;
 
     /** the current working directory. */
     private File cwd = new File(System.getProperty("user.dir"));
@@ -45,20 +79,48 @@ public class Repo implements Serializable {
     /** the directory where all of .gitlet files are stored. */
     private File f = new File(".gitlet/");
 
-    /** the directory where all of .gitlet files are stored. */
-    private File stagingArea = new File(".gitlet/stagingArea/");
+    /** the index of staged and tracked files. */
+    private File indexFile = new File(".gitlet/index");
 
     /** the directory where all commit files are stored. */
     private File allCommits = new File(".gitlet/allCommits/");
 
+    /** the directory where all tree files are stored. */
+    private File trees = new File(".gitlet/trees/");
+
     /** the directory where all blob files are stored. */
     private File blobs = new File(".gitlet/blobs/");
 
-    /** the directory where all remove files are stored. */
-    private File removeArea = new File(".gitlet/removeArea/");
+    /** the directory where packed blobs are stored. */
+    private File packs = new File(".gitlet/pack/");
+
+    /** the sorted index of commit sha1s. */
+    private File commitIds = new File(".gitlet/commit-ids");
+
+    /** the journal of commit sha1s not yet in commitIds. */
+    private File commitIdJournal = new File(".gitlet/commit-ids.new");
+
+    /** the file of commit parents and generation numbers. */
+    private File commitGraphFile = new File(".gitlet/commit-graph");
+
+    /** the catalogue of all commits. */
+    private File catalogFile = new File(".gitlet/catalog");
+
+    /** the times and messages of the commits in the catalogue. */
+    private File catalogMessages = new File(".gitlet/catalog-messages");
+
+    /** the sorted index of commit messages. */
+    private File messageIds = new File(".gitlet/messages");
+
+    /** the recent commit messages not yet in the sorted index. */
+    private File messageJournal = new File(".gitlet/messages.new");
+
+    /** the file recording how objects are compressed. */
+    private File config = new File(".gitlet/config");
+
+    /** the directory files are written in before they are checked out. */
+    private File scratch = new File(".gitlet/tmp/");
 
-    /** the directory where head file is stored. */
-    private File commitHead = new File(".gitlet/HEAD.txt");
 
     public Repo() {
         f.mkdir();
@@ -68,119 +130,83 @@ public class Repo implements Serializable {
      * creates a new repo object. */
     public void init() throws IOException {
 
-        stagingArea.mkdir();
         allCommits.mkdir();
-        removeArea.mkdir();
+        trees.mkdir();
         blobs.mkdir();
 
         Commit initialCommit = new Commit("initial commit", null, null);
+        store().putCommit(initialCommit, new TreeMap<>());
+        recordCommit(initialCommit);
 
-        sha1Commits.add(initialCommit.getSha1());
-
-        _commits.put(initialCommit.getSha1(), initialCommit);
-
-        master = new Branch("master", initialCommit, true);
-        _branches.add(master);
-
-        serialize(".gitlet/allCommits/"
-                + initialCommit.getSha1() + ".txt", initialCommit);
-        serialize(".gitlet/HEAD.txt", getInUseHead());
-        serialize(".gitlet/master.txt", master);
+        _branches.add(new Branch("master", initialCommit.getSha1(), true));
     }
 
-    /** adds a file to the staging area.
-     * @param name is file name. */
-    public void add(String name) throws IOException {
-        File cwdFile = new File(cwd, name);
-
-        File removeFile = new File(removeArea, name);
-
-        if (!cwdFile.exists()) {
-            System.out.println("File does not exist.");
-        } else {
-            File toStage = new File(stagingArea, name);
-            TreeMap<String, String> headTracked
-                    = getInUseHead().getTrackedFiles();
-            Blob testBlob = new Blob(cwdFile);
-            String fileContents = Utils.readContentsAsString(cwdFile);
-            String sha1 = Utils.sha1(name + fileContents);
-
-            if (removeFile.exists() && (removeFile.getName()).equals(name)) {
-                removeFile.delete();
-            }
+    /** adds files to the staging area, storing their blobs now so that
+     * nothing but their index entries is kept for the commit.  Each of
+     * NAMES may be a file, a directory, meaning every file under it, or a
+     * glob pattern matched against the paths of all working files.  The
+     * files are hashed and stored in parallel, and the index is written
+     * once at the end; nothing is staged if any of NAMES matches nothing.
+     * @param names are the file names, directories and patterns. */
+    public void add(String... names) throws IOException {
+        TreeSet<String> paths = new TreeSet<>();
+        for (String name : names) {
+            if (!expand(name, paths)) {
+                System.out.println("File does not exist.");
+                return;
+            }
+        }
+        HashMap<String, ObjectId> stored =
+                hasher().store(cwd, paths, index(), store());
+        for (Map.Entry<String, ObjectId> entry : stored.entrySet()) {
+            if (entry.getValue() != null) {
+                index().put(entry.getKey(), entry.getValue(),
+                        new File(cwd, entry.getKey()));
+            }
+        }
+        index().write();
+    }
 
-            if (headTracked.containsValue(sha1)) {
-                toStage.delete();
-            } else {
-                if (!toStage.exists()) {
-                    toStage.createNewFile();
+    /** Adds the paths of the working files NAME stands for to PATHS.
+     * @param name is a file name, directory or glob pattern
+     * @param paths collects the matching paths
+     * @return false iff NAME matches no file */
+    private boolean expand(String name, TreeSet<String> paths)
+            throws IOException {
+        int before = paths.size();
+        if (name.matches(".*[*?\\[{].*")) {
+            PathMatcher matcher =
+                    FileSystems.getDefault().getPathMatcher("glob:" + name);
+            for (String path : WorkTree.files(cwd, cwd)) {
+                if (matcher.matches(Paths.get(path))) {
+                    paths.add(path);
                 }
-                Utils.writeContents(toStage, fileContents);
             }
+            return paths.size() > before;
         }
+        File file = new File(cwd, name);
+        if (file.exists()) {
+            paths.addAll(WorkTree.files(cwd, file));
+        }
+        return file.exists();
     }
 
-    /** removes a file from the staging area,
-     * adds removed file to list of removed files.
+    /** unstages a file staged for addition, or stages a file tracked by
+     * the head commit for removal and deletes it from the working
+     * directory.
      * @param name is file name. */
     public void rm(String name) throws IOException {
-        File cwdFile = new File(cwd, name);
-        File stagingFile = new File(stagingArea,  name);
-        File[] stagingArray = stagingArea.listFiles();
-        Blob rmReference = null;
-        if (cwdFile.exists()) {
-            rmReference = new Blob(cwdFile);
-        }
-        String status = "can go";
-
-        for (File file: stagingArray) {
-            Blob stageReference = new Blob(file);
-            if (rmReference != null && stageReference.getSha1().equals
-                    (rmReference.getSha1())) {
-                file.delete();
-                status = "stop";
-            }
-        }
-
-        if (status.equals("can go")
-                && getInUseHead().getTrackedFiles().size() != 0) {
-            if (Arrays.asList(stagingArray).contains(cwdFile)
-                    && !getInUseHead().getTrackedFiles().containsKey(name)) {
-                stagingFile.delete();
-            } else if (getInUseHead().getTrackedFiles().containsKey(name)) {
-                File blobFile = new File(blobs,
-                        getInUseHead().getTrackedFiles().get(name) + ".txt");
-                Blob reference = Utils.readObject(blobFile, Blob.class);
-                if (cwdFile.exists()) {
-                    File removeFile = new File(removeArea, name);
-                    removeFile.createNewFile();
-                    Utils.writeContents(removeFile,
-                            reference.getFileContentsString());
-                    Utils.restrictedDelete(cwdFile);
-                } else {
-                    File removeFile = new File(removeArea, name);
-                    removeFile.createNewFile();
-                    Utils.writeContents(removeFile,
-                            reference.getFileContentsString());
-                }
-            } else if (getBranchInUse()
-                    .getTrackedInBranch().containsKey(name)) {
-                File blobFile = new File(blobs, getBranchInUse()
-                        .getTrackedInBranch().get(name) + ".txt");
-                Blob reference = Utils.readObject(blobFile, Blob.class);
-                File removeFile = new File(removeArea, name);
-                removeFile.createNewFile();
-                Utils.writeContents(removeFile,
-                        reference.getFileContentsString());
-            } else {
-                System.out.println("No reason to remove the file.");
-            }
+        ObjectId headSha1 = getInUseHead().getTrackedFiles().get(name);
+        ObjectId staged = index().get(name);
+
+        if (headSha1 == null && staged == null) {
+            System.out.println("No reason to remove the file.");
         } else {
-            if (Arrays.asList(stagingArray).contains(stagingFile)) {
-                stagingFile.delete();
-            } else {
-                System.out.println("No reason to remove the file.");
+            index().remove(name);
+            if (headSha1 != null) {
+                deleteWorkingFile(name);
             }
+            index().write();
         }
     }
 
@@ -195,20 +221,34 @@ public class Repo implements Serializable {
             }
         }
 
+        Snapshot headFiles = getInUseHead().getTrackedFiles();
+        TreeMap<String, ObjectId> indexed = index().tracked();
         System.out.println("\n=== Staged Files ===");
-        for (File file: stagingArea.listFiles()) {
-            System.out.println(file.getName());
+        for (Map.Entry<String, ObjectId> entry : indexed.entrySet()) {
+            if (!entry.getValue().equals(headFiles.get(entry.getKey()))) {
+                System.out.println(entry.getKey());
+            }
         }
 
         System.out.println("\n=== Removed Files ===");
-        for (File file: removeArea.listFiles()) {
-            System.out.println(file.getName());
+        for (String name : headFiles.keySet()) {
+            if (!indexed.containsKey(name)) {
+                System.out.println(name);
+            }
         }
 
+        WorkTree workTree = new WorkTree(cwd, index(), hasher());
         System.out.println("\n=== Modifications Not Staged For Commit ===");
+        for (Map.Entry<String, String> entry
+                : workTree.changes().entrySet()) {
+            System.out.println(entry.getKey() + " (" + entry.getValue() + ")");
+        }
 
         System.out.println("\n=== Untracked Files ===");
-
+        for (String name : workTree.untracked()) {
+            System.out.println(name);
+        }
+        index().write();
     }
 
     /** adds dictionary of name -> blob to commit tree.
@@ -217,107 +257,180 @@ public class Repo implements Serializable {
     public void commitStaged(String m, Commit secondParent) throws IOException {
 
         Commit newCommit = new Commit(m, getInUseHead(), secondParent);
-        File commitFile = new File(allCommits, newCommit.getSha1() + ".txt");
-        File[] stageList = stagingArea.listFiles();
-        File[] removeList = removeArea.listFiles();
+        Snapshot headFiles = getInUseHead().getTrackedFiles();
+        TreeMap<String, ObjectId> changes =
+                TreeDiff.changes(headFiles, index().tracked());
         if (m == null || m.equals("")) {
             System.out.println("Please enter a commit message.");
-        } else if (stageList.length == 0 && removeList.length == 0) {
+        } else if (changes.isEmpty()) {
             System.out.println("No changes added to the commit.");
         } else {
-            for (File file : stageList) {
-                Blob toStage = new Blob(file);
-                File blobFile = new File(blobs, toStage.getSha1() + ".txt");
-                nameBlob.put(toStage.getSha1(), toStage);
-                if (getInUseHead().getTrackedFiles().containsKey(file.getName())
-                    && !getInUseHead().getTrackedFiles().get
-                        (file.getName()).equals(toStage.getSha1())) {
-                    newCommit.changeTracked(file.getName(), toStage.getSha1());
+            store().putCommit(newCommit, changes);
+            recordCommit(newCommit);
+            getBranchInUse().changeHead(newCommit.getSha1());
+        }
+    }
+
+    /** Prints the history of the current branch, newest first, following
+     * first parents.  Commits are read one at a time as the walk reaches
+     * them and are not kept, and the output goes through one large buffer
+     * flushed at the end, so the first commits of a long history appear
+     * as soon as they are read.  If the reader stops listening, the walk
+     * stops too.
+     * @param options are any of "-n COUNT", to print at most COUNT
+     * commits, "--since DATE", to stop at the first commit older than
+     * DATE, given as yyyy-MM-dd or as commit times are shown, and
+     * "--oneline", to show each commit as its abbreviated sha1 and the
+     * first line of its message */
+    public void log(String... options) {
+        int limit = -1;
+        long since = Long.MIN_VALUE;
+        boolean oneline = false;
+        try {
+            for (int k = 0; k < options.length; k += 1) {
+                if (options[k].equals("-n") && k + 1 < options.length) {
+                    k += 1;
+                    limit = Integer.parseInt(options[k]);
+                    if (limit < 0) {
+                        System.out.println("Incorrect operands.");
+                        return;
+                    }
+                } else if (options[k].equals("--since")
+                        && k + 1 < options.length) {
+                    k += 1;
+                    since = parseTime(options[k]);
+                } else if (options[k].equals("--oneline")) {
+                    oneline = true;
                 } else {
-                    newCommit.addTracked(file.getName(), toStage.getSha1());
+                    System.out.println("Incorrect operands.");
+                    return;
                 }
-
-                getBranchInUse().addTracked(file.getName(), toStage.getSha1());
-
-                blobFile.createNewFile();
-                Utils.writeObject(blobFile, toStage);
-
-                file.delete();
             }
+        } catch (NumberFormatException | ParseException excp) {
+            System.out.println("Incorrect operands.");
+            return;
+        }
 
-            for (File file: removeList) {
-                Blob toRemove = new Blob(file);
-                if (getInUseHead().getTrackedFiles().containsKey(file.getName())
-                        && getInUseHead().getTrackedFiles().get
-                        (file.getName()).equals(toRemove.getSha1())) {
-                    newCommit.removeTracked(file.getName(), toRemove.getSha1());
+        Writer out = stdout();
+        ObjectId id = getBranchInUse().getHeadSha1();
+        try {
+            for (int count = 0; id != null && count != limit; count += 1) {
+                Commit current = store().readCommit(id);
+                if (since != Long.MIN_VALUE
+                        && current.getTimestamp() < since) {
+                    break;
+                }
+                String message = current.getMessage();
+                if (oneline) {
+                    int end = message.indexOf('\n');
+                    out.write(id.abbreviate(7) + " "
+                            + (end < 0 ? message : message.substring(0, end))
+                            + "\n");
+                } else {
+                    out.write(count == 0 ? "===\n" : "\n===\n");
+                    out.write("commit " + id + "\n");
+                    if (current.getSecondParentSha1() != null) {
+                        out.write("Merge: "
+                                + current.getParentSha1().abbreviate(7) + " "
+                                + current.getSecondParentSha1().abbreviate(7)
+                                + "\n");
+                    }
+                    out.write("Date: " + current.getTime() + "\n");
+                    out.write(message + "\n");
                 }
-                file.delete();
+                id = current.getParentSha1();
             }
+            out.flush();
+        } catch (IOException excp) {
+            return;
         }
-
-        commitFile.createNewFile();
-        Utils.writeObject(commitFile, newCommit);
-        _commits.put(newCommit.getSha1(), newCommit);
-        sha1Commits.add(newCommit.getSha1());
-        Utils.writeObject(commitHead, getInUseHead());
-
-        getBranchInUse().changeHead(newCommit);
-        head = getInUseHead();
     }
 
-    public void log() {
-
-        Commit current = getInUseHead();
-        int counter = 0;
-        while (current != null) {
-            if (counter == 0) {
-                System.out.println("===");
-            } else {
-                System.out.println("\n===");
+    /** @param time is a date as yyyy-MM-dd, or a time as commits show it
+     *  @return that time in milliseconds since the epoch */
+    private static long parseTime(String time) throws ParseException {
+        for (String format : new String[] { "yyyy-MM-dd",
+                                            Commit.TIME_FORMAT }) {
+            SimpleDateFormat parser = new SimpleDateFormat(format);
+            parser.setLenient(false);
+            ParsePosition position = new ParsePosition(0);
+            Date result = parser.parse(time, position);
+            if (result != null && position.getIndex() == time.length()) {
+                return result.getTime();
             }
-            System.out.println("commit " + current.getSha1());
-            if (current.getSecondParent() == null) {
-                System.out.println("Date: " + current.getTime());
-                System.out.println(current.getMessage());
-                current = current.getParent();
-            } else {
-                System.out.println("Merge: "
-                        + current.getParent().getSha1().substring(0, 7) + " "
-                        + current.getSecondParent().getSha1().substring(0, 7));
-                System.out.println("Date: " + current.getTime());
-                System.out.println(current.getMessage());
-                current = current.getParent();
-            }
-
-            counter++;
         }
+        throw new ParseException(time, 0);
     }
 
+    /** Prints every commit ever made, in the order they were made.  The
+     * commits are read in turn from the commit catalogue, and no commit
+     * object is read. */
     public void globalLog() {
-        int counter = 0;
-        Commit current;
-        for (String name: Utils.plainFilenamesIn(allCommits)) {
-            current = _commits.get(name.replace(".txt", ""));
-            if (counter == 0) {
-                System.out.println("===");
-            } else {
-                System.out.println("\n===");
-            }
-            System.out.println("commit " + current.getSha1());
-            System.out.println("Date: " + current.getTime());
-            System.out.println(current.getMessage());
-            counter++;
+        CommitCatalog catalog = catalog();
+        Writer out = stdout();
+        try {
+            for (int k = 0; k < catalog.size(); k += 1) {
+                out.write(k == 0 ? "===\n" : "\n===\n");
+                out.write("commit " + catalog.idAt(k) + "\n");
+                out.write("Date: " + catalog.timeAt(k) + "\n");
+                out.write(catalog.messageAt(k) + "\n");
+            }
+            out.flush();
+        } catch (IOException excp) {
+            return;
         }
     }
 
-    public void find(String m) {
-        Commit current;
+    /** @return a writer on the standard output through a buffer of
+     *  LOG_BUFFER bytes, whose writes fail once the reader has gone */
+    private static Writer stdout() {
+        return new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(FileDescriptor.out),
+                StandardCharsets.UTF_8), LOG_BUFFER);
+    }
+
+    /** Prints the ids of the commits whose messages match, oldest first.
+     * The message index narrows the search to the commits whose messages
+     * hold the text sought, and only their messages in the commit
+     * catalogue are read.
+     * @param args are the text sought, M, after an optional mode: by
+     * default a message must equal M, with "--word" it must hold M as a
+     * whole word, with "--substring" it must hold M, and with "--regex"
+     * some part of it must match the regular expression M */
+    public void find(String... args) {
+        String mode = args.length == 2 ? args[0] : "";
+        String m = args.length == 0 ? null : args[args.length - 1];
+        Pattern pattern = null;
+        List<String> literals = Collections.singletonList(m);
+        try {
+            if (mode.equals("--word")) {
+                pattern = Pattern.compile("(?<!\\w)" + Pattern.quote(m)
+                        + "(?!\\w)");
+            } else if (mode.equals("--regex")) {
+                pattern = Pattern.compile(m);
+                literals = MessageIndex.literals(m);
+            } else if (args.length == 0 || args.length > 2
+                    || !(mode.equals("") || mode.equals("--substring"))) {
+                System.out.println("Incorrect operands.");
+                return;
+            }
+        } catch (PatternSyntaxException excp) {
+            System.out.println("Incorrect operands.");
+            return;
+        }
+
+        int[] candidates = messageIndex().candidates(literals);
+        int count = candidates == null
+                ? messageIndex().size() : candidates.length;
         boolean printed = false;
-        for (String name: Utils.plainFilenamesIn(allCommits)) {
-            current = _commits.get(name.replace(".txt", ""));
-            if (current.getMessage().equals(m)) {
-                System.out.println(current.getSha1());
+        for (int k = 0; k < count; k += 1) {
+            int position = candidates == null ? k : candidates[k];
+            ObjectId id = catalog().idAt(position);
+            String message = catalog().messageAt(position);
+            if (pattern != null ? pattern.matcher(message).find()
+                    : mode.equals("") ? message.equals(m)
+                    : message.contains(m)) {
+                System.out.println(id);
                 printed = true;
             }
         }
@@ -330,15 +443,8 @@ public class Repo implements Serializable {
         Commit current = getInUseHead();
         File cwdFile = new File(cwd, name);
         if (current.getTrackedFiles().containsKey(name)) {
-            String blobSha1 = current.getTrackedFiles().get(name);
-            File blobFile = new File(blobs, blobSha1 + ".txt");
-            Blob newBlob = Utils.readObject(blobFile, Blob.class);
-            if (cwdFile.exists()) {
-                Utils.writeContents(cwdFile, newBlob.getFileContentsString());
-            } else {
-                cwdFile.createNewFile();
-                Utils.writeContents(cwdFile, newBlob.getFileContentsString());
-            }
+            ObjectId blobSha1 = current.getTrackedFiles().get(name);
+            store().copyBlob(blobSha1, cwdFile);
         } else {
             System.out.println("File does not exist in that commit.");
         }
@@ -346,20 +452,11 @@ public class Repo implements Serializable {
 
     public void checkout(String commitID, String name) throws IOException {
         if (getRegularID(commitID) != null) {
-            Commit current = _commits.get(getRegularID(commitID));
+            Commit current = store().getCommit(getRegularID(commitID));
             File cwdFile = new File(cwd, name);
             if (current.getTrackedFiles().containsKey(name)) {
-                String blobSha1 = current.getTrackedFiles().get(name);
-                File blobFile = new File(blobs, blobSha1 + ".txt");
-                Blob newBlob = Utils.readObject(blobFile, Blob.class);
-                if (cwdFile.exists()) {
-                    Utils.writeContents(cwdFile,
-                            newBlob.getFileContentsString());
-                } else {
-                    cwdFile.createNewFile();
-                    Utils.writeContents(cwdFile,
-                            newBlob.getFileContentsString());
-                }
+                ObjectId blobSha1 = current.getTrackedFiles().get(name);
+                store().copyBlob(blobSha1, cwdFile);
             } else {
                 System.out.println("File does not exist in that commit.");
             }
@@ -370,19 +467,6 @@ public class Repo implements Serializable {
     }
 
     public void checkoutBranch(String branchName) throws IOException {
-        File[] cwdFiles = cwd.listFiles();
-        String status = "";
-
-        for (File file: cwdFiles) {
-            if (!file.isDirectory()) {
-                Blob testBlob = new Blob(file);
-                if (!getInUseHead().getTrackedFiles()
-                        .containsValue(testBlob.getSha1())) {
-                    status = "untracked file in the way";
-                }
-            }
-        }
-
         Branch toCheckout = null;
         for (Branch branch: _branches) {
             if (branch.getName().equals(branchName)) {
@@ -394,76 +478,175 @@ public class Repo implements Serializable {
             System.out.println("No such branch exists.");
         } else if (toCheckout.isInuse()) {
             System.out.println("No need to checkout the current branch.");
-        } else if (status.equals("untracked file in the way")) {
-            System.out.println("There is an untracked file in the way; "
-                    + "delete it, or add and commit it first");
         } else {
-            Commit branchHead = toCheckout.getHead();
-            overwrite(branchHead.getTrackedFiles());
-            getBranchInUse().changeInUse(false);
-            toCheckout.changeInUse(true);
+            Commit branchHead = store().getCommit(toCheckout.getHeadSha1());
+            if (checkoutCommit(branchHead)) {
+                getBranchInUse().changeInUse(false);
+                toCheckout.changeInUse(true);
+            } else {
+                System.out.println("There is an untracked file in the way; "
+                        + "delete it, or add and commit it first");
+            }
         }
     }
 
-    public void overwrite(TreeMap<String, String> tracked) throws IOException {
-        File[] cwdFiles = cwd.listFiles();
-        if (tracked.size() == 0) {
-            for (File file: cwdFiles) {
-                file.delete();
-            }
-        } else {
-            for (File file: cwdFiles) {
-                file.delete();
+    /** Makes the working directory and index match TARGET, rewriting
+     * the files that differ between the head commit and TARGET, and any
+     * tracked file that is staged or changed in the working directory,
+     * and leaving untracked files alone.  Staged changes are dropped.
+     * Files TARGET drops are deleted before any are written, so a path
+     * may change between a file and a directory.  If any file cannot be
+     * written, every working file is left as it was.
+     * @param target is the commit to check out
+     * @return false, having changed nothing, iff an untracked file would
+     * be overwritten */
+    private boolean checkoutCommit(Commit target) throws IOException {
+        Snapshot headFiles = getInUseHead().getTrackedFiles();
+        Snapshot targetFiles = target.getTrackedFiles();
+        TreeMap<String, ObjectId> changes = TreeDiff.changes(store(),
+                getInUseHead().getTreeSha1(), target.getTreeSha1());
+        TreeSet<String> dirty = new TreeSet<>(
+                new WorkTree(cwd, index(), hasher()).changes().keySet());
+        dirty.addAll(TreeDiff.changes(headFiles, index().tracked()).keySet());
+        for (String path : dirty) {
+            if (!changes.containsKey(path) && targetFiles.get(path) != null) {
+                changes.put(path, targetFiles.get(path));
+            }
+        }
+        for (Map.Entry<String, ObjectId> entry : changes.entrySet()) {
+            if (entry.getValue() != null
+                    && untrackedInWay(entry.getKey(), headFiles)) {
+                return false;
+            }
+        }
+
+        new Materializer(store(), scratch).write(cwd, changes);
+        for (Map.Entry<String, ObjectId> entry
+                : TreeDiff.changes(index().tracked(), targetFiles).entrySet()) {
+            String path = entry.getKey();
+            if (entry.getValue() == null) {
+                index().remove(path);
+            } else {
+                index().put(path, entry.getValue(), new File(cwd, path));
             }
+        }
+        index().write();
+        return true;
+    }
 
-            for (Map.Entry<String, String> entry: tracked.entrySet()) {
-                String trackedName = entry.getKey();
-                String trackedSha1 = entry.getValue();
-                Blob trackedBlob = nameBlob.get(trackedSha1);
-                File newFile = new File(cwd, trackedName);
-                newFile.createNewFile();
-                Utils.writeContents(newFile,
-                        trackedBlob.getFileContentsString());
-
+    public void reset(String commitID) throws IOException {
+        if (getRegularID(commitID) != null) {
+            Commit toReset = store().getCommit(getRegularID(commitID));
+            if (checkoutCommit(toReset)) {
+                getBranchInUse().changeHead(toReset.getSha1());
+            } else {
+                System.out.println("There is an untracked file in the way; "
+                        + "delete it, or add and commit it first.");
             }
+        } else {
+            System.out.println("No commit with that id exists.");
         }
     }
 
-    public void reset(String commitID) throws IOException {
+    /** Prints, as unified diffs, the changes from the head commit, or the
+     * commit named by the first of IDS, to the working files, or to the
+     * commit named by the second of IDS.  A working file counts if the
+     * index tracks it.
+     * @param ids are zero to two branch names or commit ids */
+    public void diff(String... ids) throws IOException {
+        Commit from = ids.length == 0 ? getInUseHead() : namedCommit(ids[0]);
+        Commit to = ids.length == 2 ? namedCommit(ids[1]) : null;
+        if (from == null || (ids.length == 2 && to == null)) {
+            System.out.println("No commit with that id exists.");
+            return;
+        }
+        UnifiedDiff printer = new UnifiedDiff(store(), cwd, System.out);
+        Snapshot fromFiles = from.getTrackedFiles();
+        if (to != null) {
+            printer.print(fromFiles, TreeDiff.changes(store(),
+                    from.getTreeSha1(), to.getTreeSha1()), false);
+            return;
+        }
+        TreeMap<String, ObjectId> working = index().tracked();
+        for (Map.Entry<String, ObjectId> entry
+                : hasher().hash(cwd, working.keySet(), index()).entrySet()) {
+            if (entry.getValue() == null) {
+                working.remove(entry.getKey());
+            } else {
+                working.put(entry.getKey(), entry.getValue());
+            }
+        }
+        printer.print(fromFiles, TreeDiff.changes(fromFiles, working), true);
+    }
 
-        File[] cwdFiles = cwd.listFiles();
-        String status = "";
-        File[] staged = stagingArea.listFiles();
+    /** @param name is a branch name or a possibly abbreviated commit id
+     *  @return the commit it names, or null */
+    private Commit namedCommit(String name) {
+        for (Branch branch: _branches) {
+            if (branch.getName().equals(name)) {
+                return store().getCommit(branch.getHeadSha1());
+            }
+        }
+        ObjectId id = getRegularID(name);
+        return id == null ? null : store().getCommit(id);
+    }
 
-        ArrayList<String> allTracked = trackedAllBranches();
-        for (File file: staged) {
-            Blob newBlob = new Blob(file);
-            allTracked.add(newBlob.getSha1());
+    /** @return true iff the working directory holds a file with no index
+     *  entry, which deciding needs no file to be read. */
+    private boolean hasUntracked() {
+        for (String path : WorkTree.files(cwd, cwd)) {
+            if (!index().contains(path)) {
+                return true;
+            }
         }
+        return false;
+    }
 
-        for (File file: cwdFiles) {
-            if (!file.isDirectory()) {
-                Blob newBlob = new Blob(file);
-                if (!allTracked.contains(newBlob.getSha1())) {
-                    System.out.println("There is an untracked file in the way; "
-                            + "delete it, or add and commit it first.");
-                    break;
+    /** @param path is the path of a file about to be written
+     *  @param headFiles are the files the head commit tracks
+     *  @return true iff writing it would overwrite or remove a working
+     *  file neither the index nor HEADFILES tracks: a file at PATH, a
+     *  file in a directory at PATH, or a file at a directory above PATH */
+    private boolean untrackedInWay(String path, Snapshot headFiles) {
+        File file = new File(cwd, path);
+        if (file.isDirectory()) {
+            for (String inside : WorkTree.files(cwd, file)) {
+                if (!tracked(inside, headFiles)) {
+                    return true;
                 }
             }
+            return false;
+        } else if (file.isFile()) {
+            return !tracked(path, headFiles);
         }
-
-        if (getRegularID(commitID) != null) {
-            Commit toReset = _commits.get(getRegularID(commitID));
-            overwrite(toReset.getTrackedFiles());
-            getBranchInUse().changeHead(toReset);
-
-            for (File file: staged) {
-                file.delete();
+        for (int slash = path.lastIndexOf('/'); slash > 0;
+                slash = path.lastIndexOf('/', slash - 1)) {
+            String above = path.substring(0, slash);
+            if (new File(cwd, above).isFile()) {
+                return !tracked(above, headFiles);
             }
-        } else {
-            System.out.println("No commit with that id exists.");
         }
+        return false;
+    }
 
+    /** @return true iff the index or HEADFILES tracks the file at PATH.
+     *  @param path is relative to the working directory
+     *  @param headFiles are the files the head commit tracks */
+    private boolean tracked(String path, Snapshot headFiles) {
+        return index().contains(path) || headFiles.containsKey(path);
+    }
+
+    /** Deletes the working file at PATH, and then any directories above
+     *  it that are left empty.
+     *  @param path is relative to the working directory */
+    private void deleteWorkingFile(String path) {
+        File file = new File(cwd, path);
+        file.delete();
+        for (File dir = file.getParentFile(); !dir.equals(cwd)
+                && dir.isDirectory() && dir.delete();
+                dir = dir.getParentFile()) {
+            continue;
+        }
     }
 
     public void merge(String branchName) throws IOException {
@@ -484,110 +667,119 @@ public class Repo implements Serializable {
                     toMerge = branch;
                 }
             }
-            Commit splitPoint = getSplitPoint(toMerge);
-            specialMerge(splitPoint, toMerge);
-            regularMerge(splitPoint, toMerge);
+            if (!specialMerge(toMerge)) {
+                regularMerge(getSplitPoint(toMerge), toMerge);
+            }
         }
     }
 
     public void regularMerge(Commit split, Branch toMerge) throws IOException {
-        TreeMap<String, String> headFiles = getInUseHead().getTrackedFiles();
-        TreeMap<String, String> giveFiles = toMerge.getHead().getTrackedFiles();
-        TreeMap<String, String> splitFiles = split.getTrackedFiles();
-        TreeMap<String, String> allUniqueFiles = new TreeMap<>();
-        allUniqueFiles.putAll(giveFiles);
-        allUniqueFiles.putAll(headFiles);
-        allUniqueFiles.putAll(splitFiles);
-        for (Map.Entry<String, String> fileRun : allUniqueFiles.entrySet()) {
-            String path = fileRun.getKey();
-            String givenC = giveFiles.get(path);
-            String headC = headFiles.get(path);
-            String splitC = splitFiles.get(path);
-            if (givenC == null) {
-                givenC = "deleted";
-            }
-            if (splitC == null) {
-                splitC = "deleted";
-            }
-            if (headC == null) {
-                headC = "deleted";
-            }
-            if (splitC.equals("deleted") && headC.equals("deleted")
-                    && !givenC.equals("deleted")) {
-                Blob newBlob = Utils.readObject(new File(blobs + "/"
-                        + givenC + ".txt"), Blob.class);
-                File file = new File(path);
-                Utils.writeContents(file, newBlob.getFileContentsString());
-                add(file.getName());
-            } else if (headC.equals(splitC) && givenC.equals("deleted")) {
-                File file = new File(path);
-                rm(file.getName());
-            } else if (!givenC.equals(splitC) && headC.equals(splitC)) {
-                Blob newBlob = Utils.readObject(new File(blobs + "/"
-                        + givenC + ".txt"), Blob.class);
-                File file = new File(path);
-                Utils.writeContents(file, newBlob.getFileContentsString());
-                add(file.getName());
-            } else if (!givenC.equals(splitC) && !headC.equals(splitC)) {
-                if (!givenC.equals(headC)) {
-                    Blob givenBlob = null, headBlob = null;
-                    if (!givenC.equals("deleted")) {
-                        givenBlob = Utils.readObject(new File(blobs
-                                + "/" + givenC + ".txt"), Blob.class);
-                    }
-                    if (!headC.equals("deleted")) {
-                        headBlob = Utils.readObject(new File(blobs
-                                + "/" + headC + ".txt"), Blob.class);
+        Snapshot headFiles = getInUseHead().getTrackedFiles();
+        Commit givenHead = store().getCommit(toMerge.getHeadSha1());
+        Snapshot giveFiles = givenHead.getTrackedFiles();
+        Snapshot splitFiles = split.getTrackedFiles();
+        TreeSet<String> allUniqueFiles = new TreeSet<>();
+        allUniqueFiles.addAll(giveFiles.keySet());
+        allUniqueFiles.addAll(headFiles.keySet());
+        allUniqueFiles.addAll(splitFiles.keySet());
+        for (String path : allUniqueFiles) {
+            ObjectId givenC = giveFiles.get(path);
+            ObjectId headC = headFiles.get(path);
+            ObjectId splitC = splitFiles.get(path);
+            if (splitC == null && headC == null && givenC != null) {
+                takeGiven(path, givenC);
+            } else if (Objects.equals(headC, splitC) && givenC == null) {
+                rm(path);
+            } else if (!Objects.equals(givenC, splitC)
+                    && Objects.equals(headC, splitC)) {
+                takeGiven(path, givenC);
+            } else if (!Objects.equals(givenC, splitC)
+                    && !Objects.equals(headC, splitC)
+                    && !Objects.equals(givenC, headC)) {
+                File file = new File(cwd, path);
+                ObjectStore.BlobOutput out = store().writeBlob(file);
+                boolean conflicted = true;
+                try {
+                    if (givenC != null && headC != null) {
+                        conflicted = new LineMerge(splitC == null
+                                ? new byte[0] : store().readBlob(splitC),
+                                store().readBlob(headC),
+                                store().readBlob(givenC), out).conflicted();
+                    } else {
+                        conflictFile(out, givenC, headC);
                     }
-                    File file = new File(path);
-                    conflictFile(path, givenBlob, headBlob);
-                    add(file.getName());
+                } catch (IOException | RuntimeException excp) {
+                    out.abort();
+                    throw excp;
+                }
+                out.close();
+                index().put(path, out.getBlob().getSha1(), file);
+                if (conflicted) {
                     System.out.println("Encountered a merge conflict.");
                 }
             }
         }
+        index().write();
         commitStaged("Merged " + toMerge.getName() + " into "
-                        + getBranchInUse().getName() + ".", toMerge.getHead());
+                        + getBranchInUse().getName() + ".", givenHead);
+    }
+
+    /** Writes the given branch's version of the file at PATH, the blob
+     * with sha1 GIVENID, and stages it without reading it back.
+     * @param path is relative to the working directory
+     * @param givenId is the blob's sha1 */
+    private void takeGiven(String path, ObjectId givenId) {
+        File file = new File(cwd, path);
+        store().copyBlob(givenId, file);
+        index().put(path, givenId, file);
     }
 
-    /** Creates a confict file where its content follows conflicted format.
-     * @param filePath Path string.
-     * @param targetBlob Target string content.
-     * @param headBlob Head branch string content.
+    /** Writes a whole-file conflict to OUT, streaming both versions
+     * straight from their blobs.
+     * @param out is the merged file being written
+     * @param givenId is the given branch's blob sha1, or null if deleted
+     * @param headId is the head branch's blob sha1, or null if deleted
      */
-    public static void conflictFile(String filePath,
-                                    Blob targetBlob,
-                                    Blob headBlob) {
-        File conflictedFile = new File(filePath);
-        String conflictContent = "<<<<<<< HEAD\n";
-        if (headBlob != null) {
-            conflictContent += headBlob.getFileContentsString();
+    private void conflictFile(OutputStream out, ObjectId givenId,
+                              ObjectId headId) throws IOException {
+        out.write("<<<<<<< HEAD\n".getBytes(StandardCharsets.UTF_8));
+        if (headId != null) {
+            try (InputStream in = store().openBlob(headId)) {
+                in.transferTo(out);
+            }
         }
-        conflictContent += "=======\n";
-        if (targetBlob != null) {
-            conflictContent += targetBlob.getFileContentsString();
+        out.write("=======\n".getBytes(StandardCharsets.UTF_8));
+        if (givenId != null) {
+            try (InputStream in = store().openBlob(givenId)) {
+                in.transferTo(out);
+            }
         }
-        conflictContent += ">>>>>>>\n";
-        Utils.writeContents(conflictedFile, conflictContent);
+        out.write(">>>>>>>\n".getBytes(StandardCharsets.UTF_8));
     }
 
-    private void specialMerge(Commit splitPoint, Branch branch)
-            throws IOException {
-        if (splitPoint.equals(getInUseHead())) {
+    /** Handles a merge with BRANCH that needs no merge commit, when
+     * either head is an ancestor of the other.
+     * @param branch is the branch being merged in
+     * @return true iff the merge was handled here */
+    private boolean specialMerge(Branch branch) throws IOException {
+        int head = positionOf(getBranchInUse().getHeadSha1());
+        int other = positionOf(branch.getHeadSha1());
+        if (graph().isAncestor(head, other)) {
             checkoutBranch(branch.getName());
             System.out.println("Current branch fast-forwarded");
-            System.exit(0);
+            return true;
         }
-        if (splitPoint.equals(branch.getHead())) {
+        if (graph().isAncestor(other, head)) {
             System.out.println("Given branch is an "
                     + "ancestor of the current branch.");
-            System.exit(0);
+            return true;
         }
+        return false;
     }
 
     public ArrayList<Commit> getCommitsBranch(Branch branch) {
         ArrayList<Commit> newList = new ArrayList<>();
-        Commit temp = branch.getHead();
+        Commit temp = store().getCommit(branch.getHeadSha1());
         while (temp != null) {
             newList.add(temp);
             temp = temp.getParent();
@@ -596,59 +788,19 @@ public class Repo implements Serializable {
     }
 
     public Commit getSplitPoint(Branch branch) {
-        Commit currentHead = getInUseHead();
-        Commit branchHead = branch.getHead();
-
-        Graph allCommitGraph = new Graph(sha1Commits);
-
-        ArrayList<Commit> allSplitPoints = new ArrayList<>();
-
-        allCommitGraph.breathFirstSearch(currentHead.getSha1(), "blue");
-        allCommitGraph.breathFirstSearch(branchHead.getSha1(), "red");
-
-        for (Node node: allCommitGraph.getAllNodes()) {
-            if (node.getColor().equals("red")) {
-                ArrayList<Node> parents = node.getParents();
-                for (Node parentNode: parents) {
-                    parentNode.setCount(1);
-                }
-            }
-        }
-
-        for (Node node: allCommitGraph.getAllNodes()) {
-            if (node.getColor().equals("red") && node.getCount() == 0) {
-                allSplitPoints.add(_commits.get(node.getLabel()));
-            }
-        }
-
-        return allSplitPoints.get(0);
+        int split = graph().mergeBase(
+                positionOf(getBranchInUse().getHeadSha1()),
+                positionOf(branch.getHeadSha1()));
+        return store().getCommit(commitGraph().idAt(split));
     }
 
     public String errorCases(String branchName) {
-        File[] cwdFiles = cwd.listFiles();
-        File[] stageArray = stagingArea.listFiles();
-        File[] removeArray = removeArea.listFiles();
         String status = "PASSES";
 
-        ArrayList<String> allTracked = trackedAllBranches();
-
-        for (File file: stageArray) {
-            Blob newBlob = new Blob(file);
-            allTracked.add(newBlob.getSha1());
-        }
-
-        for (File file: cwdFiles) {
-            if (!file.isDirectory()) {
-                Blob newBlob = new Blob(file);
-                if (!allTracked.contains(newBlob.getSha1())) {
-                    status = "untracked file in the way";
-                }
-            }
-        }
-
-        if (status.equals("untracked file in the way")) {
-            return status;
-        } else if (stageArray.length != 0 || removeArray.length != 0) {
+        if (hasUntracked()) {
+            return "untracked file in the way";
+        } else if (!index().tracked().equals(
+                getInUseHead().getTrackedFiles())) {
             status = "uncommitted";
         } else {
             Branch toMerge = null;
@@ -667,6 +819,47 @@ public class Repo implements Serializable {
         return status;
     }
 
+    /** Compress objects written from now on according to SETTING, which
+     *  is a deflate level from 0 to 9, or "store" to never compress.
+     *  Objects already written keep the encoding they were written with.
+     *  @param setting is the new compression setting */
+    public void setCompression(String setting) {
+        Codec.parse(setting).write(config);
+        _store = null;
+    }
+
+    /** Moves all blobs into a single pack file, storing the versions of
+     *  each file as deltas against each other where that saves space.
+     *  Versions are grouped by walking back from every branch head. */
+    public void repack() throws IOException {
+        LinkedHashMap<String, LinkedHashSet<ObjectId>> versions =
+                new LinkedHashMap<>();
+        HashSet<ObjectId> visited = new HashSet<>();
+        ArrayDeque<ObjectId> queue = new ArrayDeque<>();
+        for (Branch branch : _branches) {
+            queue.add(branch.getHeadSha1());
+        }
+        while (!queue.isEmpty()) {
+            ObjectId id = queue.poll();
+            if (!visited.add(id)) {
+                continue;
+            }
+            Commit commit = store().getCommit(id);
+            for (Map.Entry<String, ObjectId> entry
+                    : commit.getTrackedFiles().entrySet()) {
+                versions.computeIfAbsent(entry.getKey(),
+                        k -> new LinkedHashSet<>()).add(entry.getValue());
+            }
+            if (commit.getParentSha1() != null) {
+                queue.add(commit.getParentSha1());
+            }
+            if (commit.getSecondParentSha1() != null) {
+                queue.add(commit.getSecondParentSha1());
+            }
+        }
+        store().repack(versions.values());
+    }
+
     public void createBranch(String name) {
         for (Branch branch : _branches) {
             if (branch.getName().equals(name)) {
@@ -674,7 +867,8 @@ public class Repo implements Serializable {
                 break;
             }
         }
-        Branch newBranch = new Branch(name, getInUseHead(), false);
+        Branch newBranch = new Branch(name,
+                getBranchInUse().getHeadSha1(), false);
         _branches.add(newBranch);
     }
 
@@ -708,38 +902,106 @@ public class Repo implements Serializable {
     }
 
     public Commit getInUseHead() {
-        return getBranchInUse().getHead();
+        return store().getCommit(getBranchInUse().getHeadSha1());
     }
 
-    public ArrayList<String> trackedAllBranches() {
-        ArrayList<String> newList = new ArrayList<>();
-        for (Branch branch: _branches) {
-            for (Map.Entry<String, String> set
-                    :branch.getTrackedInBranch().entrySet()) {
-                newList.add(set.getValue());
+    /** @param uid is the abbreviated id
+     *  @return the original commit sha1 or null */
+    public ObjectId getRegularID(String uid) {
+        return commitIndex().resolve(uid);
+    }
+
+    /** Adds the stored commit C to the commit graph and commit index.
+     *  @param c is the new commit */
+    private void recordCommit(Commit c) {
+        CommitCatalog catalog = catalog();
+        MessageIndex messages = messageIndex();
+        int position = commitGraph().add(c.getSha1(),
+                positionOf(c.getParentSha1()),
+                positionOf(c.getSecondParentSha1()));
+        commitIndex().add(c.getSha1(), position);
+        catalog.add(c);
+        messages.add(position, c.getMessage());
+        _graph = null;
+    }
+
+    /** @param sha1 is a full commit id, or null
+     *  @return its position in the commit graph, or CommitGraph.NONE */
+    private int positionOf(ObjectId sha1) {
+        return sha1 == null ? CommitGraph.NONE : commitIndex().position(sha1);
+    }
+
+    /** @return the commit sha1 index, opening it on first use. */
+    private CommitIndex commitIndex() {
+        if (_commitIndex == null) {
+            _commitIndex = new CommitIndex(commitIds, commitIdJournal);
+        }
+        return _commitIndex;
+    }
+
+    /** @return the commit catalogue, opening it on first use and first
+     *  cataloguing any commits made before it existed. */
+    private CommitCatalog catalog() {
+        if (_catalog == null) {
+            _catalog = new CommitCatalog(catalogFile, catalogMessages);
+            for (int k = _catalog.size(); k < commitGraph().size(); k += 1) {
+                _catalog.add(store().readCommit(commitGraph().idAt(k)));
             }
         }
-        return newList;
+        return _catalog;
     }
 
-    /** @param uid is the abbreviated id
-     *  @return the original commit sha1 or null */
-    public String getRegularID(String uid) {
-        Set<String> setOfKeys = _commits.keySet();
-        for (String key: setOfKeys) {
-            if (key.contains(uid)) {
-                return key;
+    /** @return the index of commit messages, opening it on first use and
+     *  first indexing any commits made before it existed. */
+    private MessageIndex messageIndex() {
+        if (_messageIndex == null) {
+            _messageIndex = new MessageIndex(messageIds, messageJournal);
+            for (int k = _messageIndex.size(); k < catalog().size();
+                    k += 1) {
+                _messageIndex.add(k, catalog().messageAt(k));
             }
         }
-        return null;
+        return _messageIndex;
     }
 
-    public void serialize(String filePath, Serializable toSerialize)
-            throws IOException {
-        File file = new File(filePath);
+    /** @return the commit graph, opening it on first use. */
+    private CommitGraph commitGraph() {
+        if (_commitGraph == null) {
+            _commitGraph = new CommitGraph(commitGraphFile);
+        }
+        return _commitGraph;
+    }
 
-        file.createNewFile();
+    /** @return the commit graph loaded for queries, on first use. */
+    private Graph graph() {
+        if (_graph == null) {
+            _graph = new Graph(commitGraph());
+        }
+        return _graph;
+    }
 
-        Utils.writeObject(file, toSerialize);
+    /** @return the index of staged files, reading it on first use. */
+    private Index index() {
+        if (_index == null) {
+            _index = new Index(indexFile);
+        }
+        return _index;
+    }
+
+    /** @return the hasher of working files, made on first use. */
+    private Hasher hasher() {
+        if (_hasher == null) {
+            _hasher = new Hasher();
+        }
+        return _hasher;
+    }
+
+    /** @return the object store, opening it on first use. */
+    private ObjectStore store() {
+        if (_store == null) {
+            _store = new ObjectStore(allCommits, trees, blobs, packs,
+                    Codec.read(config));
+        }
+        return _store;
     }
 }
@@ -0,0 +1,266 @@
+package gitlet;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/** An immutable map from file path to blob sha1, iterated in path order.
+ *  It is a persistent treap: adding or removing a path copies only the
+ *  O(log n) nodes on the way to it and shares every other node with the
+ *  snapshot it came from, so many snapshots of a slowly changing set of
+ *  files cost little more memory than one.  Each node's priority is a
+ *  hash of its path, so the shape of a snapshot depends only on its
+ *  paths, not on the order they were added in.
+ *  @author Chuhui Han
+ */
+class Snapshot extends AbstractMap<String, ObjectId> {
+
+    /** The snapshot of no files. */
+    static final Snapshot EMPTY = new Snapshot(null, 0);
+
+    /** A snapshot whose treap is ROOT, holding SIZE paths. */
+    private Snapshot(Node root, int size) {
+        _root = root;
+        _size = size;
+    }
+
+    /** Return a snapshot holding the entries of FILES. */
+    static Snapshot of(Map<String, ObjectId> files) {
+        return EMPTY.apply(files);
+    }
+
+    /** Return this snapshot with the changes in CHANGES applied: each
+     *  path mapped to a sha1 is added or replaced, and each mapped to null
+     *  is removed. */
+    Snapshot apply(Map<String, ObjectId> changes) {
+        Node root = _root;
+        int size = _size;
+        for (Map.Entry<String, ObjectId> entry : changes.entrySet()) {
+            boolean had = find(root, entry.getKey()) != null;
+            if (entry.getValue() == null) {
+                if (had) {
+                    root = remove(root, entry.getKey());
+                    size -= 1;
+                }
+            } else {
+                root = insert(root, new Node(entry.getKey(), entry.getValue(),
+                                             null, null));
+                size += had ? 0 : 1;
+            }
+        }
+        return root == _root ? this : new Snapshot(root, size);
+    }
+
+    @Override
+    public ObjectId get(Object key) {
+        Node node = key instanceof String ? find(_root, (String) key) : null;
+        return node == null ? null : node.value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof String && find(_root, (String) key) != null;
+    }
+
+    @Override
+    public int size() {
+        return _size;
+    }
+
+    @Override
+    public Set<Map.Entry<String, ObjectId>> entrySet() {
+        return new AbstractSet<Map.Entry<String, ObjectId>>() {
+            @Override
+            public Iterator<Map.Entry<String, ObjectId>> iterator() {
+                return new InOrder(_root);
+            }
+
+            @Override
+            public int size() {
+                return _size;
+            }
+        };
+    }
+
+    /** Return the node for KEY in the treap ROOT, or null. */
+    private static Node find(Node root, String key) {
+        Node node = root;
+        while (node != null) {
+            int c = key.compareTo(node.key);
+            if (c == 0) {
+                return node;
+            }
+            node = c < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    /** Return the treap ROOT with ENTRY, a childless node, in place of any
+     *  node with the same key. */
+    private static Node insert(Node root, Node entry) {
+        if (root == null) {
+            return entry;
+        }
+        int c = entry.key.compareTo(root.key);
+        if (c == 0) {
+            return new Node(root.key, entry.value, root.left, root.right);
+        } else if (c < 0) {
+            Node left = insert(root.left, entry);
+            if (left.above(root)) {
+                return new Node(left.key, left.value, left.left,
+                                new Node(root.key, root.value, left.right,
+                                         root.right));
+            }
+            return new Node(root.key, root.value, left, root.right);
+        } else {
+            Node right = insert(root.right, entry);
+            if (right.above(root)) {
+                return new Node(right.key, right.value,
+                                new Node(root.key, root.value, root.left,
+                                         right.left),
+                                right.right);
+            }
+            return new Node(root.key, root.value, root.left, right);
+        }
+    }
+
+    /** Return the treap ROOT without the node for KEY, which it has. */
+    private static Node remove(Node root, String key) {
+        int c = key.compareTo(root.key);
+        if (c == 0) {
+            return join(root.left, root.right);
+        } else if (c < 0) {
+            return new Node(root.key, root.value, remove(root.left, key),
+                            root.right);
+        } else {
+            return new Node(root.key, root.value, root.left,
+                            remove(root.right, key));
+        }
+    }
+
+    /** Return the treap of the nodes of LEFT and RIGHT, all of whose keys
+     *  are smaller than all of RIGHT's. */
+    private static Node join(Node left, Node right) {
+        if (left == null) {
+            return right;
+        } else if (right == null) {
+            return left;
+        } else if (left.above(right)) {
+            return new Node(left.key, left.value, left.left,
+                            join(left.right, right));
+        } else {
+            return new Node(right.key, right.value, join(left, right.left),
+                            right.right);
+        }
+    }
+
+    /** A treap node.  Nodes are never changed once made. */
+    private static class Node implements Map.Entry<String, ObjectId> {
+        /** A node mapping KEY to VALUE with subtreaps LEFT and RIGHT. */
+        Node(String key, ObjectId value, Node left, Node right) {
+            this.key = key;
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            this.priority = priority(key);
+        }
+
+        /** Return true iff this node belongs above OTHER in a treap. */
+        boolean above(Node other) {
+            return priority > other.priority
+                || (priority == other.priority
+                    && key.compareTo(other.key) < 0);
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public ObjectId getValue() {
+            return value;
+        }
+
+        @Override
+        public ObjectId setValue(ObjectId ignored) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> other = (Map.Entry<?, ?>) obj;
+            return key.equals(other.getKey())
+                && value.equals(other.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ value.hashCode();
+        }
+
+        /** Return the priority of a node for KEY, a scrambled hash so that
+         *  similar paths get unrelated priorities. */
+        private static int priority(String key) {
+            int h = key.hashCode() * 0x9e3779b9;
+            return h ^ (h >>> 16);
+        }
+
+        /** The path. */
+        private final String key;
+        /** The blob sha1. */
+        private final ObjectId value;
+        /** The nodes with smaller paths. */
+        private final Node left;
+        /** The nodes with larger paths. */
+        private final Node right;
+        /** The node's priority. */
+        private final int priority;
+    }
+
+    /** An iterator over the nodes of a treap in key order. */
+    private static class InOrder
+        implements Iterator<Map.Entry<String, ObjectId>> {
+        /** An iterator over ROOT. */
+        InOrder(Node root) {
+            descend(root);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !_path.isEmpty();
+        }
+
+        @Override
+        public Map.Entry<String, ObjectId> next() {
+            if (_path.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            Node result = _path.pop();
+            descend(result.right);
+            return result;
+        }
+
+        /** Push NODE and its chain of left children. */
+        private void descend(Node node) {
+            for (; node != null; node = node.left) {
+                _path.push(node);
+            }
+        }
+
+        /** Nodes whose keys are yet to be returned, smallest on top. */
+        private final ArrayDeque<Node> _path = new ArrayDeque<>();
+    }
+
+    /** The root of the treap, or null if empty. */
+    private final Node _root;
+    /** Number of paths. */
+    private final int _size;
+}
@@ -0,0 +1,115 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of Snapshot, against a TreeMap holding the same entries.
+ *  @author Chuhui Han
+ */
+public class SnapshotTest {
+
+    /** Return a sha1 standing for the contents TEXT. */
+    private static ObjectId id(String text) {
+        return ObjectId.hash(text);
+    }
+
+    /** Return the map of just KEY to VALUE, which may be null. */
+    private static Map<String, ObjectId> change(String key, ObjectId value) {
+        HashMap<String, ObjectId> result = new HashMap<>();
+        result.put(key, value);
+        return result;
+    }
+
+    /** Check that SNAPSHOT holds exactly the entries of EXPECTED, and
+     *  iterates them in path order. */
+    private static void check(TreeMap<String, ObjectId> expected,
+                              Snapshot snapshot) {
+        assertEquals(expected.size(), snapshot.size());
+        assertEquals(new ArrayList<>(expected.entrySet()),
+                     new ArrayList<>(snapshot.entrySet()));
+        for (Map.Entry<String, ObjectId> entry : expected.entrySet()) {
+            assertTrue(snapshot.containsKey(entry.getKey()));
+            assertEquals(entry.getValue(), snapshot.get(entry.getKey()));
+        }
+    }
+
+    /** Check adding, replacing and removing single paths. */
+    @Test
+    public void insertReplaceRemove() {
+        Snapshot s = Snapshot.EMPTY.apply(change("b.txt", id("1")));
+        assertEquals(1, s.size());
+        assertEquals(id("1"), s.get("b.txt"));
+        assertFalse(s.containsKey("a.txt"));
+        assertNull(s.get("a.txt"));
+
+        s = s.apply(change("a.txt", id("2")));
+        s = s.apply(change("b.txt", id("3")));
+        assertEquals(2, s.size());
+        assertEquals(id("2"), s.get("a.txt"));
+        assertEquals(id("3"), s.get("b.txt"));
+
+        s = s.apply(change("b.txt", null));
+        assertEquals(1, s.size());
+        assertFalse(s.containsKey("b.txt"));
+        assertSame(s, s.apply(change("missing.txt", null)));
+        s = s.apply(change("a.txt", null));
+        assertEquals(0, s.size());
+        assertTrue(s.isEmpty());
+    }
+
+    /** Check that entries iterate in path order whatever order they were
+     *  added in. */
+    @Test
+    public void inOrderIteration() {
+        String[] paths = { "m", "c", "x", "a", "d/e", "d", "b", "z", "y" };
+        TreeMap<String, ObjectId> expected = new TreeMap<>();
+        Snapshot s = Snapshot.EMPTY;
+        for (String path : paths) {
+            expected.put(path, id(path));
+            s = s.apply(change(path, id(path)));
+            check(expected, s);
+        }
+        check(expected, Snapshot.of(expected));
+        assertEquals(expected, s);
+    }
+
+    /** Check that updating a snapshot leaves every earlier snapshot as it
+     *  was, over many random changes. */
+    @Test
+    public void olderVersionsUnchanged() {
+        Random rand = new Random(61);
+        ArrayList<Snapshot> versions = new ArrayList<>();
+        ArrayList<TreeMap<String, ObjectId>> expected = new ArrayList<>();
+        Snapshot s = Snapshot.EMPTY;
+        TreeMap<String, ObjectId> model = new TreeMap<>();
+        for (int step = 0; step < 300; step += 1) {
+            HashMap<String, ObjectId> changes = new HashMap<>();
+            for (int k = rand.nextInt(5); k >= 0; k -= 1) {
+                String path = "f" + rand.nextInt(40);
+                ObjectId value =
+                    rand.nextInt(3) == 0 ? null : id("v" + rand.nextInt(9));
+                changes.put(path, value);
+            }
+            for (Map.Entry<String, ObjectId> entry : changes.entrySet()) {
+                if (entry.getValue() == null) {
+                    model.remove(entry.getKey());
+                } else {
+                    model.put(entry.getKey(), entry.getValue());
+                }
+            }
+            s = s.apply(changes);
+            versions.add(s);
+            expected.add(new TreeMap<>(model));
+        }
+        for (int k = 0; k < versions.size(); k += 1) {
+            check(expected.get(k), versions.get(k));
+        }
+    }
+
+}
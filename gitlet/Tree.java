@@ -0,0 +1,60 @@
+package gitlet;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** The contents of one directory of a snapshot: the sha1 of the blob of
+ *  each file in it, and the sha1 of the tree of each subdirectory.  Trees
+ *  are named by the hash of their entries, so a directory that did not
+ *  change between two commits is one shared tree object, and two
+ *  snapshots can be compared a directory at a time, skipping any
+ *  subdirectories whose sha1s agree.
+ *  @author Chuhui Han
+ */
+public class Tree implements Serializable {
+
+    /** The tree of an empty directory. */
+    static final Tree EMPTY = new Tree(new TreeMap<>(), new TreeMap<>());
+
+    /** File name to blob sha1, in name order. */
+    private TreeMap<String, ObjectId> _files;
+    /** Subdirectory name to tree sha1, in name order. */
+    private TreeMap<String, ObjectId> _dirs;
+    /** The sha1 of this tree's entries. */
+    private ObjectId _sha1;
+
+    public Tree(TreeMap<String, ObjectId> files,
+                TreeMap<String, ObjectId> dirs) {
+        _files = new TreeMap<>(files);
+        _dirs = new TreeMap<>(dirs);
+        StringBuilder entries = new StringBuilder("tree");
+        for (Map.Entry<String, ObjectId> entry : _files.entrySet()) {
+            entries.append('\n').append(entry.getKey()).append('\0');
+            entry.getValue().appendTo(entries);
+        }
+        for (Map.Entry<String, ObjectId> entry : _dirs.entrySet()) {
+            entries.append('\n').append(entry.getKey()).append('/')
+                    .append('\0');
+            entry.getValue().appendTo(entries);
+        }
+        _sha1 = ObjectId.hash(entries.toString());
+    }
+
+    public TreeMap<String, ObjectId> getFiles() {
+        return _files;
+    }
+
+    public TreeMap<String, ObjectId> getDirs() {
+        return _dirs;
+    }
+
+    public boolean isEmpty() {
+        return _files.isEmpty() && _dirs.isEmpty();
+    }
+
+    public ObjectId getSha1() {
+        return _sha1;
+    }
+
+}
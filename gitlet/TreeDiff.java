@@ -0,0 +1,86 @@
+package gitlet;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/** The difference between two snapshots, each a map from path to blob
+ *  sha1 iterated in path order, such as a TreeMap or a Snapshot.  The two
+ *  are walked together once in path order, like the merge step of a merge
+ *  sort, so the cost is linear in their sizes and nothing is looked up.
+ *  Snapshots stored as trees are compared a directory at a time, so
+ *  unchanged subdirectories cost nothing.
+ *  @author Chuhui Han
+ */
+class TreeDiff {
+
+    /** Return the paths whose sha1s differ between FROM and TO, which
+     *  both iterate in path order, each mapped to its sha1 in TO, or to
+     *  null if TO does not have it. */
+    static <V> TreeMap<String, V> changes(Map<String, V> from,
+                                          Map<String, V> to) {
+        TreeMap<String, V> result = new TreeMap<>();
+        Iterator<Map.Entry<String, V>> i = from.entrySet().iterator();
+        Iterator<Map.Entry<String, V>> j = to.entrySet().iterator();
+        Map.Entry<String, V> a = next(i), b = next(j);
+        while (a != null || b != null) {
+            int c = a == null ? 1
+                : b == null ? -1 : a.getKey().compareTo(b.getKey());
+            if (c < 0) {
+                result.put(a.getKey(), null);
+                a = next(i);
+            } else if (c > 0) {
+                result.put(b.getKey(), b.getValue());
+                b = next(j);
+            } else {
+                if (!a.getValue().equals(b.getValue())) {
+                    result.put(b.getKey(), b.getValue());
+                }
+                a = next(i);
+                b = next(j);
+            }
+        }
+        return result;
+    }
+
+    /** Return the files that differ between the snapshots whose root
+     *  trees in STORE have sha1s FROM and TO, as for changes(FROM's files,
+     *  TO's files).  Subdirectories whose trees have the same sha1 in both
+     *  are skipped without being read. */
+    static TreeMap<String, ObjectId> changes(ObjectStore store,
+                                             ObjectId from, ObjectId to) {
+        TreeMap<String, ObjectId> result = new TreeMap<>();
+        addChanges(store, from, to, "", result);
+        return result;
+    }
+
+    /** Add the changes between the trees in STORE with sha1s FROM and TO,
+     *  either of which may be null for an empty tree, to RESULT, with
+     *  PREFIX before their paths. */
+    private static void addChanges(ObjectStore store, ObjectId from,
+                                   ObjectId to, String prefix,
+                                   TreeMap<String, ObjectId> result) {
+        if (from != null && from.equals(to)) {
+            return;
+        }
+        Tree a = from == null ? Tree.EMPTY : store.getTree(from);
+        Tree b = to == null ? Tree.EMPTY : store.getTree(to);
+        for (Map.Entry<String, ObjectId> entry
+                 : changes(a.getFiles(), b.getFiles()).entrySet()) {
+            result.put(prefix + entry.getKey(), entry.getValue());
+        }
+        TreeSet<String> dirs = new TreeSet<>(a.getDirs().keySet());
+        dirs.addAll(b.getDirs().keySet());
+        for (String dir : dirs) {
+            addChanges(store, a.getDirs().get(dir), b.getDirs().get(dir),
+                       prefix + dir + "/", result);
+        }
+    }
+
+    /** Return the next entry of I, or null if there is none. */
+    private static <V> Map.Entry<String, V> next(
+        Iterator<Map.Entry<String, V>> i) {
+        return i.hasNext() ? i.next() : null;
+    }
+}
@@ -0,0 +1,229 @@
+package gitlet;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/** Prints the changes to a set of files as unified diffs.  The files are
+ *  diffed in parallel on the hashing pool (see Hasher), at most AHEAD of
+ *  them beyond the one being printed, and each file's diff is written out
+ *  in path order as soon as it and those before it are done, so output
+ *  starts at once however many files changed.  Blobs are read from the
+ *  store only by the calling thread.  Lines are handled as ISO-8859-1,
+ *  so any contents are printed byte for byte.
+ *  @author Chuhui Han
+ */
+class UnifiedDiff {
+
+    /** Number of unchanged lines shown around each change. */
+    static final int CONTEXT = 3;
+    /** Most files diffed but not yet printed. */
+    static final int AHEAD = 16 * Hasher.THREADS;
+
+    /** A printer reading blobs from STORE and working files from DIR,
+     *  writing to OUT. */
+    UnifiedDiff(ObjectStore store, File dir, OutputStream out) {
+        _store = store;
+        _dir = dir;
+        _out = new BufferedWriter(
+            new OutputStreamWriter(out, StandardCharsets.ISO_8859_1),
+            1 << 16);
+    }
+
+    /** Print the diff of each path in CHANGES, which iterates in path
+     *  order, from its blob in FROM, if any, to the blob it is mapped to,
+     *  or to nothing if it is mapped to null.  If WORKING, the new version
+     *  is instead the working file. */
+    void print(Map<String, ObjectId> from, Map<String, ObjectId> changes,
+               boolean working) throws IOException {
+        ForkJoinPool pool = Hasher.pool();
+        ArrayDeque<ForkJoinTask<String>> pending = new ArrayDeque<>();
+        for (Map.Entry<String, ObjectId> entry : changes.entrySet()) {
+            String path = entry.getKey();
+            ObjectId before = from.get(path);
+            ObjectId after = entry.getValue();
+            FileDiff task = new FileDiff(path,
+                before == null ? null : _store.readBlob(before),
+                after == null || working ? null : _store.readBlob(after),
+                after != null && working ? new File(_dir, path) : null);
+            pending.add(pool.submit(task));
+            while (pending.size() >= AHEAD
+                   || (!pending.isEmpty() && pending.peek().isDone())) {
+                emit(pending);
+            }
+        }
+        while (!pending.isEmpty()) {
+            emit(pending);
+        }
+        _out.flush();
+    }
+
+    /** Write out the diff of the first of PENDING, waiting for it if need
+     *  be, and flush the output if the next is not ready yet. */
+    private void emit(ArrayDeque<ForkJoinTask<String>> pending)
+        throws IOException {
+        _out.write(pending.poll().join());
+        if (pending.isEmpty() || !pending.peek().isDone()) {
+            _out.flush();
+        }
+    }
+
+    /** Return the unified diff of PATH from BEFORE to AFTER, either of
+     *  which is null if the file does not exist in that version. */
+    static String diff(String path, byte[] before, byte[] after) {
+        StringBuilder result = new StringBuilder();
+        result.append("diff --git a/").append(path).append(" b/")
+            .append(path).append('\n');
+        if (isBinary(before) || isBinary(after)) {
+            return result.append("Binary files ")
+                .append(before == null ? "/dev/null" : "a/" + path)
+                .append(" and ")
+                .append(after == null ? "/dev/null" : "b/" + path)
+                .append(" differ\n").toString();
+        }
+        result.append("--- ")
+            .append(before == null ? "/dev/null" : "a/" + path).append('\n');
+        result.append("+++ ")
+            .append(after == null ? "/dev/null" : "b/" + path).append('\n');
+
+        ArrayList<String> lines1 = Delta.lines(before == null
+                                               ? new byte[0] : before);
+        ArrayList<String> lines2 = Delta.lines(after == null
+                                               ? new byte[0] : after);
+        Diff diff = new Diff();
+        diff.setSequences(lines1, lines2);
+        int[] edits = diff.diffs();
+        for (int first = 0; first < edits.length;) {
+            int last = first;
+            while (last + 4 < edits.length
+                   && edits[last + 4] - edits[last] - edits[last + 1]
+                       <= 2 * CONTEXT) {
+                last += 4;
+            }
+            hunk(result, lines1, lines2, edits, first, last);
+            first = last + 4;
+        }
+        return result.toString();
+    }
+
+    /** Append to OUT the hunk showing the edits EDITS[FIRST .. LAST + 3]
+     *  from LINES1 to LINES2, in the form of Diff.diffs(), with CONTEXT
+     *  lines around them. */
+    private static void hunk(StringBuilder out, ArrayList<String> lines1,
+                             ArrayList<String> lines2, int[] edits,
+                             int first, int last) {
+        int start1 = Math.max(0, edits[first] - CONTEXT);
+        int start2 = edits[first + 2] - (edits[first] - start1);
+        int end1 = Math.min(lines1.size(),
+                            edits[last] + edits[last + 1] + CONTEXT);
+        int end2 = edits[last + 2] + edits[last + 3]
+            + (end1 - edits[last] - edits[last + 1]);
+        out.append("@@ -").append(range(start1, end1 - start1))
+            .append(" +").append(range(start2, end2 - start2))
+            .append(" @@\n");
+        int k1 = start1;
+        for (int e = first; e <= last; e += 4) {
+            for (; k1 < edits[e]; k1 += 1) {
+                line(out, ' ', lines1.get(k1));
+            }
+            for (; k1 < edits[e] + edits[e + 1]; k1 += 1) {
+                line(out, '-', lines1.get(k1));
+            }
+            for (int k2 = edits[e + 2]; k2 < edits[e + 2] + edits[e + 3];
+                 k2 += 1) {
+                line(out, '+', lines2.get(k2));
+            }
+        }
+        for (; k1 < end1; k1 += 1) {
+            line(out, ' ', lines1.get(k1));
+        }
+    }
+
+    /** Return the range of LEN lines starting at 0-based line START as a
+     *  hunk header shows it. */
+    private static String range(int start, int len) {
+        if (len == 1) {
+            return Integer.toString(start + 1);
+        } else if (len == 0) {
+            return start + ",0";
+        }
+        return (start + 1) + "," + len;
+    }
+
+    /** Append LINE to OUT, marked by KIND, noting if it has no newline. */
+    private static void line(StringBuilder out, char kind, String line) {
+        out.append(kind).append(line);
+        if (!line.endsWith("\n")) {
+            out.append("\n\\ No newline at end of file\n");
+        }
+    }
+
+    /** Return true iff CONTENTS, which may be null, hold a NUL byte. */
+    private static boolean isBinary(byte[] contents) {
+        if (contents != null) {
+            for (byte b : contents) {
+                if (b == 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /** A task computing the diff of one file. */
+    private static class FileDiff extends RecursiveTask<String> {
+
+        /** Fixed rather than computed, though diffs are never written
+         *  out. */
+        private static final long serialVersionUID = 1L;
+
+        /** A task diffing PATH from BEFORE to AFTER, or to the contents
+         *  of WORKING if it is not null. */
+        FileDiff(String path, byte[] before, byte[] after, File working) {
+            _path = path;
+            _before = before;
+            _after = after;
+            _working = working;
+        }
+
+        @Override
+        protected String compute() {
+            byte[] after = _after;
+            if (_working != null) {
+                try {
+                    after = Files.readAllBytes(_working.toPath());
+                } catch (IOException excp) {
+                    throw new IllegalArgumentException(excp.getMessage());
+                }
+            }
+            return diff(_path, _before, after);
+        }
+
+        /** The file's path. */
+        private final String _path;
+        /** The old contents, or null. */
+        private final byte[] _before;
+        /** The new contents, or null. */
+        private final byte[] _after;
+        /** The working file holding the new contents, or null. */
+        private final File _working;
+    }
+
+    /** The store blobs are read from. */
+    private final ObjectStore _store;
+    /** The directory of working files. */
+    private final File _dir;
+    /** Where the diffs are written. */
+    private final Writer _out;
+}
@@ -0,0 +1,101 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** A comparison of the working directory with the index.  Indexed files
+ *  whose metadata no longer match their entries are rehashed in parallel
+ *  by a Hasher; the rest are known to be unchanged from a stat alone.
+ *  Files found unchanged after all have their entries refreshed, so the
+ *  next scan need not hash them.
+ *  @author Chuhui Han
+ */
+class WorkTree {
+
+    /** Compare the files in DIR with INDEX, hashing with HASHER and
+     *  refreshing INDEX's entries of unchanged files. */
+    WorkTree(File dir, Index index, Hasher hasher) {
+        TreeMap<String, ObjectId> tracked = index.tracked();
+        HashMap<String, ObjectId> hashed =
+            hasher.hash(dir, tracked.keySet(), index);
+        for (Map.Entry<String, ObjectId> entry : tracked.entrySet()) {
+            String path = entry.getKey();
+            if (!hashed.containsKey(path)) {
+                continue;
+            }
+            ObjectId id = hashed.get(path);
+            if (id == null) {
+                _changes.put(path, "deleted");
+            } else if (id.equals(entry.getValue())) {
+                index.put(path, id, new File(dir, path));
+            } else {
+                _changes.put(path, "modified");
+            }
+        }
+        for (String path : files(dir, dir)) {
+            if (!index.contains(path)) {
+                _untracked.add(path);
+            }
+        }
+        _untracked.sort(null);
+    }
+
+    /** Return the paths relative to ROOT, with / between names, of
+     *  START if it is a file, or else of the files under it, leaving out
+     *  ROOT's .gitlet directory. */
+    static ArrayList<String> files(File root, File start) {
+        ArrayList<String> result = new ArrayList<>();
+        Path base = root.toPath().toAbsolutePath().normalize();
+        Path gitlet = base.resolve(".gitlet");
+        try {
+            Files.walkFileTree(start.toPath().toAbsolutePath().normalize(),
+                               new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult preVisitDirectory(
+                        Path dir, BasicFileAttributes attrs) {
+                        return dir.equals(gitlet)
+                            ? FileVisitResult.SKIP_SUBTREE
+                            : FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFile(
+                        Path file, BasicFileAttributes attrs) {
+                        if (attrs.isRegularFile()) {
+                            result.add(base.relativize(file).toString()
+                                       .replace(File.separatorChar, '/'));
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return result;
+    }
+
+    /** Return the indexed files whose working files differ from the
+     *  index, in order, each mapped to "modified" or "deleted". */
+    TreeMap<String, String> changes() {
+        return _changes;
+    }
+
+    /** Return the working files with no index entry, in order. */
+    ArrayList<String> untracked() {
+        return _untracked;
+    }
+
+    /** Changed files, mapped to the kind of change. */
+    private final TreeMap<String, String> _changes = new TreeMap<>();
+    /** Untracked files. */
+    private final ArrayList<String> _untracked = new ArrayList<>();
+}